@@ -0,0 +1,91 @@
+package com.askknightro.askknightro.bench;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.service.ChunkStore;
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+
+// Deterministic inputs shared by the benchmarks: course-like documents and retrieval hit lists.
+public final class BenchData {
+
+    private static final String[] TOPICS = {
+            "Dijkstra's algorithm", "binary search trees", "CDA 3103 pipelining", "cache coherence",
+            "dynamic programming", "the master theorem", "hash table load factors", "virtual memory",
+            "Assignment 4", "the midterm review", "red-black tree rotations", "TCP congestion control"
+    };
+
+    private static final String[] SENTENCES = {
+            "In this lecture we revisit %s and work through two examples from the homework.",
+            "A common mistake with %s is forgetting the base case; check the edge conditions carefully.",
+            "Office hours this week focus on %s, so bring questions from the practice problems.",
+            "The running time of %s depends on the input size and the chosen data structure.",
+            "Compare %s with the approach from last week and note where the invariants differ.",
+            "Exam questions on %s usually ask you to trace the algorithm by hand on a small input."
+    };
+
+    private BenchData() {}
+
+    /** Roughly {@code chars} characters of syllabus/lecture-notes style text, split into paragraphs. */
+    public static String courseDocument(int chars, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(chars + 256);
+        int sentencesInParagraph = 0;
+        while (sb.length() < chars) {
+            String topic = TOPICS[rnd.nextInt(TOPICS.length)];
+            sb.append(String.format(SENTENCES[rnd.nextInt(SENTENCES.length)], topic)).append(' ');
+            if (++sentencesInParagraph == 5) {
+                sb.append("\n\n");
+                sentencesInParagraph = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Dense hits as they come back from Milvus: sorted by similarity, with distance and vector metadata. */
+    public static List<Document> denseHits(int count, int materials, long seed) {
+        Random rnd = new Random(seed);
+        List<Document> hits = new ArrayList<>(count);
+        double score = 0.9;
+        for (int i = 0; i < count; i++) {
+            score -= rnd.nextDouble() * 0.02;
+            hits.add(hit(rnd.nextInt(materials), i, Map.of("distance", 1.0 - score, ChunkStore.VECTOR, vector(384, rnd)), rnd));
+        }
+        return hits;
+    }
+
+    /** Full-text hits: partly the same chunks as the dense list, in a different order. */
+    public static List<Document> lexicalHits(List<Document> dense, int count, int materials, long seed) {
+        Random rnd = new Random(seed);
+        List<Document> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0 && !dense.isEmpty()) {
+                Document d = dense.get(rnd.nextInt(dense.size()));
+                hits.add(Document.builder().id(d.getId()).text(d.getText()).metadata(new HashMap<>(d.getMetadata())).build());
+            } else {
+                hits.add(hit(rnd.nextInt(materials), 1000 + i, Map.of("lexical_rank", rnd.nextDouble()), rnd));
+            }
+        }
+        return hits;
+    }
+
+    private static float[] vector(int dims, Random rnd) {
+        float[] v = new float[dims];
+        for (int i = 0; i < dims; i++) v[i] = (float) rnd.nextGaussian();
+        return v;
+    }
+
+    private static Document hit(int materialId, int chunkIndex, Map<String, Object> extra, Random rnd) {
+        Map<String, Object> meta = new HashMap<>(extra);
+        meta.put("classId", 1);
+        meta.put("material_id", materialId);
+        meta.put("chunk_index", chunkIndex);
+        meta.put("name", "Lecture " + materialId);
+        meta.put("fileName", "lecture-" + materialId + ".txt");
+        return Document.builder()
+                .id(MaterialChunk.docId(materialId, chunkIndex))
+                .text(courseDocument(900, rnd.nextLong()))
+                .metadata(meta)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.askknightro.askknightro.bench;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.util.StreamingTextChunker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Splitting a course document into chunks: whole-document TokenTextSplitter vs the windowed chunker used by ingest
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    // ~20 KB syllabus, ~200 KB lecture notes, ~1 MB textbook chapter
+    @Param({"20000", "200000", "1000000"})
+    public int documentChars;
+
+    private String document;
+    private TokenTextSplitter splitter;
+
+    @Setup
+    public void setup() {
+        document = BenchData.courseDocument(documentChars, 7);
+        splitter = new TokenTextSplitter();
+    }
+
+    @Benchmark
+    public List<Document> tokenTextSplitter() {
+        return splitter.apply(List.of(new Document(document)));
+    }
+
+    @Benchmark
+    public int streamingChunker(Blackhole bh) throws IOException {
+        int n = 0;
+        try (StreamingTextChunker chunker = new StreamingTextChunker(new StringReader(document), splitter,
+                Map.of("classId", 1, "material_id", 1), i -> MaterialChunk.docId(1, i), 65536)) {
+            while (chunker.hasNext()) {
+                bh.consume(chunker.next());
+                n++;
+            }
+        }
+        return n;
+    }
+}
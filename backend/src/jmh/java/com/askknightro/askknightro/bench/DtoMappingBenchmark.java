@@ -0,0 +1,52 @@
+package com.askknightro.askknightro.bench;
+
+import com.askknightro.askknightro.dto.AskResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building the AskResponse returned by /api/ask and serializing it the way the controllers do
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private ObjectMapper mapper;
+    private List<Document> hits;
+    private AskResponse response;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        hits = BenchData.denseHits(24, 12, 42);
+        response = buildResponse();
+    }
+
+    @Benchmark
+    public AskResponse buildResponse() {
+        List<AskResponse.Source> sources = hits.stream()
+                .limit(8)
+                .map(d -> AskResponse.Source.builder()
+                        .materialId(((Number) d.getMetadata().get("material_id")).intValue())
+                        .name(String.valueOf(d.getMetadata().get("name")))
+                        .fileName(String.valueOf(d.getMetadata().get("fileName")))
+                        .score(1.0 - ((Number) d.getMetadata().get("distance")).doubleValue())
+                        .snippet(d.getText().substring(0, Math.min(d.getText().length(), 240)))
+                        .build())
+                .toList();
+        return AskResponse.builder().answer(BenchData.courseDocument(1200, 3)).sources(sources).build();
+    }
+
+    @Benchmark
+    public String serializeResponse() throws JsonProcessingException {
+        return mapper.writeValueAsString(response);
+    }
+}
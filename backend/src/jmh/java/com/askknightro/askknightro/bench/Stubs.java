@@ -0,0 +1,21 @@
+package com.askknightro.askknightro.bench;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+// Minimal stand-ins for Spring Data repositories: only the listed methods are implemented
+public final class Stubs {
+
+    private Stubs() {}
+
+    @SuppressWarnings("unchecked")
+    public static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> impl = methods.get(method.getName());
+            if (impl != null) return impl.apply(args);
+            if (method.getName().equals("toString")) return type.getSimpleName() + "Stub";
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package com.askknightro.askknightro.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Auth overhead per request: Cognito-style access token -> JwtAuthenticationToken, verifying the RS256
+// signature and running the validators every time vs. the token-hash cache in front of the decoder.
+// "activeUsers" distinct tokens are presented round-robin, as when that many students are chatting.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String ISSUER = "https://cognito-idp.us-east-2.amazonaws.com/us-east-2_bench";
+    private static final String CLIENT_ID = "bench-client";
+
+    @Param({"1", "1000"})
+    public int activeUsers;
+
+    private String[] tokens;
+    private int next;
+    private JwtDecoder uncached;
+    private JwtDecoder cached;
+    private Converter<Jwt, ? extends AbstractAuthenticationToken> converter;
+
+    @Setup
+    public void setup() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("bench").generate();
+        RSASSASigner signer = new RSASSASigner(key);
+
+        tokens = new String[activeUsers];
+        for (int i = 0; i < activeUsers; i++) {
+            SignedJWT jwt = new SignedJWT(
+                    new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("bench").build(),
+                    new JWTClaimsSet.Builder()
+                            .issuer(ISSUER)
+                            .subject("sub-" + i)
+                            .claim("token_use", "access")
+                            .claim("client_id", CLIENT_ID)
+                            .claim("username", "student" + i)
+                            .claim("scope", "openid email")
+                            .claim("cognito:groups", List.of(i % 20 == 0 ? "teacher" : "student"))
+                            .issueTime(new Date())
+                            .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                            .build());
+            jwt.sign(signer);
+            tokens[i] = jwt.serialize();
+        }
+
+        var keys = new ImmutableJWKSet<SecurityContext>(new JWKSet(key.toPublicJWK()));
+        uncached = SecurityConfig.accessTokenDecoder(keys, ISSUER, CLIENT_ID);
+        cached = new CachingJwtDecoder(SecurityConfig.accessTokenDecoder(keys, ISSUER, CLIENT_ID),
+                10_000, Duration.ofHours(1), new SimpleMeterRegistry(), "jwt_access_tokens");
+        converter = new SecurityConfig().cognitoJwtAuthConverter();
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken verifyEveryRequest() {
+        return converter.convert(uncached.decode(nextToken()));
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken cachedByTokenHash() {
+        return converter.convert(cached.decode(nextToken()));
+    }
+
+    private String nextToken() {
+        String t = tokens[next];
+        next = (next + 1) % tokens.length;
+        return t;
+    }
+}
@@ -0,0 +1,90 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.bench.BenchData;
+import com.askknightro.askknightro.bench.Stubs;
+import com.askknightro.askknightro.dto.AskRequest;
+import com.askknightro.askknightro.dto.AskResponse;
+import com.askknightro.askknightro.entity.Course;
+import com.askknightro.askknightro.loadtest.DeterministicChatModel;
+import com.askknightro.askknightro.loadtest.DeterministicEmbeddingModel;
+import com.askknightro.askknightro.loadtest.InMemoryChunkStore;
+import com.askknightro.askknightro.repository.ChatMessageRepository;
+import com.askknightro.askknightro.repository.ChatSessionRepository;
+import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// AskService.answer() end to end with every backend stubbed: measures our own overhead per question
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AskServiceBenchmark {
+
+    private AskService askService;
+    private AskRequest request;
+
+    @Setup
+    public void setup() {
+        List<Document> dense = BenchData.denseHits(24, 12, 42);
+        List<Document> lexical = BenchData.lexicalHits(dense, 24, 12, 43);
+
+        ChunkStore chunkStore = new InMemoryChunkStore() {
+            @Override
+            public List<Document> search(Integer classId, float[] query, int topK, double minScore) {
+                return dense;
+            }
+        };
+        RagMetrics metrics = new RagMetrics(new SimpleMeterRegistry(), 100);
+        LexicalSearchService lexicalSearch = new LexicalSearchService(
+                Stubs.repository(MaterialChunkRepository.class, Map.of()), metrics, true, 1, 1, Duration.ofSeconds(1), false) {
+            @Override
+            public CompletableFuture<List<Document>> searchAsync(Integer classId, String question, int limit) {
+                return CompletableFuture.completedFuture(lexical);
+            }
+        };
+
+        Course course = new Course();
+        course.setCourseName("CDA 3103 Computer Logic and Organization");
+        CourseManagementRepository courses = Stubs.repository(CourseManagementRepository.class,
+                Map.of("findById", args -> Optional.of(course)));
+        CourseCatalog catalog = new CourseCatalog(courses, new SimpleMeterRegistry(), 5000, 50_000, Duration.ofMinutes(10));
+
+        DeterministicEmbeddingModel embeddings = new DeterministicEmbeddingModel(384, 0);
+        SemanticAnswerCache answerCache = new SemanticAnswerCache(embeddings, new SimpleMeterRegistry(),
+                false, 0.08, 500, Duration.ofHours(6));
+
+        ChatClient.Builder chat = ChatClient.builder(new DeterministicChatModel("Dijkstra's algorithm finds shortest paths from one source."));
+        ContextPacker packer = new ContextPacker("gpt-4o-mini", 2000, 400, 0.95, 0.7);
+        // Single-turn requests: conversation memory is off, as for a request without a session
+        ConversationMemory conversation = new ConversationMemory(
+                Stubs.repository(ChatMessageRepository.class, Map.of()),
+                Stubs.repository(ChatSessionRepository.class, Map.of()),
+                chat, packer, metrics, new SimpleMeterRegistry(),
+                false, 6, 600, 40, 10_000, Duration.ofMinutes(30), false);
+
+        askService = new AskService(chunkStore, embeddings, chat,
+                catalog, answerCache, lexicalSearch, metrics, packer, conversation);
+
+        request = new AskRequest();
+        request.setClassId(1);
+        request.setQuestion("How does Dijkstra's algorithm handle negative edge weights?");
+    }
+
+    @Benchmark
+    public AskResponse answer() {
+        return askService.answer(request);
+    }
+}
@@ -0,0 +1,121 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.bench.Stubs;
+import com.askknightro.askknightro.dto.StudentDto;
+import com.askknightro.askknightro.entity.Enrollment;
+import com.askknightro.askknightro.entity.Student;
+import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.askknightro.askknightro.repository.EnrollmentRepository;
+import com.askknightro.askknightro.repository.StudentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Class roster (GET /api/enrollments/{id}) as one projection query vs. the old per-student findById.
+// Every repository call costs a simulated database round trip; "queries" reports calls per roster.
+// This only models latency: the statement counts against real Postgres are asserted by
+// EnrollmentRosterStatementCountTest.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnrollmentRosterBenchmark {
+
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Param({"40", "400"})
+    public int students;
+
+    private final AtomicLong queries = new AtomicLong();
+    private EnrollmentRepository enrollments;
+    private StudentService studentService;
+    private EnrollmentService enrollmentService;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Queries {
+        public long queries;
+    }
+
+    @Setup
+    public void setup() {
+        Map<Integer, Student> byId = new HashMap<>();
+        List<Enrollment> rows = new ArrayList<>();
+        List<EnrollmentRepository.EnrolledStudent> roster = new ArrayList<>();
+        for (int i = 1; i <= students; i++) {
+            Student s = Student.builder()
+                    .studentId(i)
+                    .name("Student " + i)
+                    .email("student" + i + "@ucf.edu")
+                    .yearStanding("Junior")
+                    .major("Computer Science")
+                    .gradDate(LocalDate.of(2027, 5, 1))
+                    .schoolId("S" + (5_000_000 + i))
+                    .universityCollege("CECS")
+                    .build();
+            byId.put(i, s);
+            rows.add(Enrollment.builder().enrollmentId(i).student(s).build());
+            roster.add(new Row(s));
+        }
+
+        enrollments = Stubs.repository(EnrollmentRepository.class, Map.of(
+                "findAllByClassIdNative", args -> query(rows),
+                "findStudentsByClassId", args -> query(roster)));
+        StudentRepository studentRepository = Stubs.repository(StudentRepository.class, Map.of(
+                "findById", args -> query(Optional.ofNullable(byId.get((Integer) args[0])))));
+
+        studentService = new StudentService(studentRepository, null, null);
+        CourseManagementRepository courses = Stubs.repository(CourseManagementRepository.class, Map.of());
+        enrollmentService = new EnrollmentService(enrollments, courses, studentService, studentRepository,
+                new CourseCatalog(courses, new SimpleMeterRegistry(), 5000, 50_000, Duration.ofMinutes(10)));
+    }
+
+    // What readStudentList did before: one query for the enrollments, then one per student
+    @Benchmark
+    public List<StudentDto> perStudentLookup(Queries q) {
+        long before = queries.get();
+        List<StudentDto> out = enrollments.findAllByClassIdNative(1).stream()
+                .map(e -> studentService.readStudent(e.getStudent().getStudentId()))
+                .toList();
+        q.queries += queries.get() - before;
+        return out;
+    }
+
+    @Benchmark
+    public List<StudentDto> rosterProjection(Queries q) {
+        long before = queries.get();
+        List<StudentDto> out = enrollmentService.readStudentList(1);
+        q.queries += queries.get() - before;
+        return out;
+    }
+
+    private <T> T query(T result) {
+        queries.incrementAndGet();
+        LockSupport.parkNanos(ROUND_TRIP_NANOS);
+        return result;
+    }
+
+    private record Row(Student s) implements EnrollmentRepository.EnrolledStudent {
+        public Integer getStudentId() { return s.getStudentId(); }
+        public String getName() { return s.getName(); }
+        public String getEmail() { return s.getEmail(); }
+        public String getProfilePicture() { return s.getProfilePicture(); }
+        public String getYearStanding() { return s.getYearStanding(); }
+        public String getMajor() { return s.getMajor(); }
+        public LocalDate getGradDate() { return s.getGradDate(); }
+        public String getSchoolId() { return s.getSchoolId(); }
+        public String getUniversityCollege() { return s.getUniversityCollege(); }
+    }
+}
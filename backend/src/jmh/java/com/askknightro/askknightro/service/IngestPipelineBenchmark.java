@@ -0,0 +1,94 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.bench.BenchData;
+import com.askknightro.askknightro.bench.Stubs;
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.loadtest.DeterministicEmbeddingModel;
+import com.askknightro.askknightro.loadtest.InMemoryChunkStore;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import com.askknightro.askknightro.util.ContentHash;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Ingest throughput (chunks/s) with simulated Ollama and Milvus latency, by stage concurrency.
+// Shows how much overlapping embed and insert buys over running them back to back (concurrency=1).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class IngestPipelineBenchmark {
+
+    private static final int CHUNKS = 640;
+    private static final int BATCH = 32;
+
+    @Param({"1", "2", "4"})
+    public int concurrency;
+
+    // Per-batch latency of the fake embedding model and of the fake Milvus upsert
+    @Param({"40"})
+    public int embedMillis;
+
+    @Param({"15"})
+    public int insertMillis;
+
+    private IngestPipeline pipeline;
+    private List<Document> chunks;
+
+    @Setup
+    public void setup() {
+        ChunkStore store = new InMemoryChunkStore() {
+            @Override
+            public void upsert(List<Document> docs, List<float[]> vectors) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(insertMillis));
+            }
+        };
+        // Empty manifest: every chunk is new and gets embedded
+        MaterialChunkRepository manifest = Stubs.repository(MaterialChunkRepository.class, Map.of(
+                "findByContentHashIn", args -> List.of(),
+                "saveAll", args -> args[0]));
+
+        pipeline = new IngestPipeline(new DeterministicEmbeddingModel(384, embedMillis), store, manifest,
+                new RagMetrics(new SimpleMeterRegistry(), 100),
+                concurrency, concurrency, concurrency * 2, 1, Duration.ofMillis(1), false);
+
+        String text = BenchData.courseDocument(CHUNKS * 800, 11);
+        chunks = new ArrayList<>(CHUNKS);
+        for (int i = 0; i < CHUNKS; i++) {
+            String chunk = text.substring(i * 800, (i + 1) * 800);
+            Map<String, Object> meta = new HashMap<>();
+            meta.put("classId", 1);
+            meta.put("material_id", 1);
+            meta.put("chunk_index", i);
+            meta.put("content_hash", ContentHash.sha256Hex(chunk));
+            chunks.add(Document.builder().id(MaterialChunk.docId(1, i)).text(chunk).metadata(meta).build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public IngestPipeline.Stats ingest() {
+        Iterator<Document> it = chunks.iterator();
+        Iterator<List<Document>> batches = new Iterator<>() {
+            @Override public boolean hasNext() { return it.hasNext(); }
+            @Override public List<Document> next() {
+                List<Document> batch = new ArrayList<>(BATCH);
+                while (batch.size() < BATCH && it.hasNext()) batch.add(it.next());
+                return batch;
+            }
+        };
+        return pipeline.run(batches, () -> false, done -> {});
+    }
+}
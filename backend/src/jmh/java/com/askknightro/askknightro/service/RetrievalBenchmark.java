@@ -0,0 +1,57 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.bench.BenchData;
+import com.askknightro.askknightro.dto.AskResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Pure CPU parts of AskService.retrieve(): fusion, context packing, source grouping/scoring
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetrievalBenchmark {
+
+    @Param({"24", "50"})
+    public int topK;
+
+    private List<Document> dense;
+    private List<Document> lexical;
+    private List<Document> fused;
+    private ContextPacker packer;
+
+    @Setup
+    public void setup() {
+        dense = BenchData.denseHits(topK, 12, 42);
+        lexical = BenchData.lexicalHits(dense, topK, 12, 43);
+        fused = AskService.fuse(dense, lexical);
+        packer = new ContextPacker("gpt-4o-mini", 2000, 400, 0.95, 0.7);
+    }
+
+    @Benchmark
+    public List<Document> fuse() {
+        return AskService.fuse(dense, lexical);
+    }
+
+    @Benchmark
+    public ContextPacker.Packed packContext() {
+        return packer.pack(fused);
+    }
+
+    @Benchmark
+    public List<AskResponse.Source> toSources() {
+        return AskService.toSources(fused);
+    }
+
+    @Benchmark
+    public double scoreOfAll() {
+        double sum = 0;
+        for (Document d : fused) sum += AskService.scoreOf(d);
+        return sum;
+    }
+}
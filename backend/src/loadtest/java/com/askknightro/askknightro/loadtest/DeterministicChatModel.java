@@ -0,0 +1,54 @@
+package com.askknightro.askknightro.loadtest;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Stand-in for the OpenAI chat model: fixed answer, no network. Optionally paced like a real
+// completion: a delay before the first token, then one word-sized token every tokenLatency.
+public class DeterministicChatModel implements ChatModel {
+
+    private final String answer;
+    private final List<String> tokens;
+    private final Duration firstTokenLatency;
+    private final Duration tokenLatency;
+
+    public DeterministicChatModel(String answer) {
+        this(answer, Duration.ZERO, Duration.ZERO);
+    }
+
+    public DeterministicChatModel(String answer, Duration firstTokenLatency, Duration tokenLatency) {
+        this.answer = answer;
+        // Split after whitespace so the tokens concatenate back to the exact answer
+        this.tokens = List.of(answer.split("(?<=\\s)"));
+        this.firstTokenLatency = firstTokenLatency;
+        this.tokenLatency = tokenLatency;
+    }
+
+    // Blocking call costs as long as streaming the whole answer would
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        long nanos = firstTokenLatency.toNanos() + tokenLatency.toNanos() * tokens.size();
+        if (nanos > 0) LockSupport.parkNanos(nanos);
+        return response(answer);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        Flux<String> out = Flux.fromIterable(tokens);
+        if (!tokenLatency.isZero()) out = out.delayElements(tokenLatency);
+        if (!firstTokenLatency.isZero()) out = out.delaySubscription(firstTokenLatency);
+        return out.map(DeterministicChatModel::response);
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
@@ -0,0 +1,57 @@
+package com.askknightro.askknightro.loadtest;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Stand-in for Ollama: same text -> same unit vector, with an optional fixed per-call latency.
+public class DeterministicEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final long latencyNanos;
+
+    public DeterministicEmbeddingModel(int dimensions, long latencyMillis) {
+        this.dimensions = dimensions;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+        List<Embedding> out = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) out.add(new Embedding(vectorFor(texts.get(i)), i));
+        return new EmbeddingResponse(out);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private float[] vectorFor(String text) {
+        Random rnd = new Random(text.hashCode());
+        float[] v = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            v[i] = (float) rnd.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) v[i] *= inv;
+        return v;
+    }
+}
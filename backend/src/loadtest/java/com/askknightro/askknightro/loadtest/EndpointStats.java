@@ -0,0 +1,79 @@
+package com.askknightro.askknightro.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Results of one endpoint's phase: latencies (from the intended send time, so a stalled server
+// shows up as queueing delay instead of silently lowering the offered rate), errors and allocation.
+class EndpointStats {
+
+    final String endpoint;
+    private long[] latencies = new long[1024];
+    private int count;
+    private long[] firstTokens = new long[1024];
+    private int firstTokenCount;
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+
+    long elapsedNanos;
+    long allocatedBytes = -1;   // unknown until the server reports it
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    synchronized void record(long nanos) {
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+        latencies[count++] = nanos;
+    }
+
+    synchronized void recordFirstToken(long nanos) {
+        if (firstTokenCount == firstTokens.length) firstTokens = Arrays.copyOf(firstTokens, firstTokenCount * 2);
+        firstTokens[firstTokenCount++] = nanos;
+    }
+
+    synchronized Map<String, Object> summary() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("endpoint", endpoint);
+        out.put("requests", count);
+        out.put("errors", errors.get());
+        out.put("dropped", dropped.get());
+        out.put("throughputPerSec", round(seconds > 0 ? count / seconds : 0));
+        out.put("p50Ms", millis(percentile(sorted, 50)));
+        out.put("p95Ms", millis(percentile(sorted, 95)));
+        out.put("p99Ms", millis(percentile(sorted, 99)));
+        out.put("maxMs", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        if (firstTokenCount > 0) {
+            long[] ft = Arrays.copyOf(firstTokens, firstTokenCount);
+            Arrays.sort(ft);
+            out.put("firstTokenP50Ms", millis(percentile(ft, 50)));
+            out.put("firstTokenP99Ms", millis(percentile(ft, 99)));
+        }
+        if (allocatedBytes >= 0 && seconds > 0) {
+            out.put("allocMBPerSec", round(allocatedBytes / seconds / (1024 * 1024)));
+            out.put("allocKBPerRequest", round(count == 0 ? 0 : allocatedBytes / 1024.0 / count));
+        }
+        return out;
+    }
+
+    // Nearest-rank percentile
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 10) / 10.0;
+    }
+}
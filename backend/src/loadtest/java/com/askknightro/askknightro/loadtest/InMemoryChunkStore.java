@@ -0,0 +1,118 @@
+package com.askknightro.askknightro.loadtest;
+
+import com.askknightro.askknightro.service.ChunkStore;
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stand-in for Milvus: per-class maps searched by brute-force cosine. Exact rather than ANN, which is
+// fine at load-test sizes and keeps the results deterministic. Vectors are normalized on write.
+public class InMemoryChunkStore implements ChunkStore {
+
+    private record Entry(String text, Map<String, Object> metadata, float[] unit) {}
+
+    private final Map<Integer, Map<String, Entry>> byClass = new ConcurrentHashMap<>();
+    private final Map<String, Integer> classOf = new ConcurrentHashMap<>();
+
+    @Override
+    public void upsert(List<Document> docs, List<float[]> vectors) {
+        if (docs.size() != vectors.size()) {
+            throw new IllegalArgumentException("Got " + vectors.size() + " embeddings for " + docs.size() + " chunks");
+        }
+        for (int i = 0; i < docs.size(); i++) {
+            Document d = docs.get(i);
+            Integer classId = ((Number) d.getMetadata().get("classId")).intValue();
+            Integer previous = classOf.put(d.getId(), classId);
+            if (previous != null && !previous.equals(classId)) removeFrom(previous, d.getId());
+            byClass.computeIfAbsent(classId, c -> new ConcurrentHashMap<>())
+                    .put(d.getId(), new Entry(d.getText(), Map.copyOf(d.getMetadata()), normalize(vectors.get(i))));
+        }
+    }
+
+    @Override
+    public List<Document> search(Integer classId, float[] query, int topK, double minScore) {
+        Map<String, Entry> chunks = byClass.get(classId);
+        if (chunks == null || chunks.isEmpty()) return List.of();
+
+        float[] q = normalize(query);
+        // Min-heap of the best topK so far
+        PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(topK + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<String, Entry> e : chunks.entrySet()) {
+            double score = dot(q, e.getValue().unit());
+            if (score < minScore) continue;
+            best.add(Map.entry(e.getKey(), score));
+            if (best.size() > topK) best.poll();
+        }
+
+        List<Document> hits = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Map.Entry<String, Double> hit = best.poll();
+            Entry entry = chunks.get(hit.getKey());
+            if (entry == null) continue;   // deleted meanwhile
+            Map<String, Object> meta = new HashMap<>(entry.metadata());
+            meta.put("distance", 1.0 - hit.getValue());
+            meta.put(VECTOR, entry.unit());
+            hits.add(Document.builder().id(hit.getKey()).text(entry.text()).metadata(meta).score(hit.getValue()).build());
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    @Override
+    public Map<String, StoredVector> fetchVectors(Collection<String> ids) {
+        Map<String, StoredVector> out = new HashMap<>();
+        for (String id : ids) {
+            Integer classId = classOf.get(id);
+            Map<String, Entry> chunks = classId == null ? null : byClass.get(classId);
+            Entry entry = chunks == null ? null : chunks.get(id);
+            if (entry != null) out.put(id, new StoredVector(entry.unit(), (String) entry.metadata().get("content_hash")));
+        }
+        return out;
+    }
+
+    @Override
+    public void delete(Collection<String> ids) {
+        for (String id : ids) {
+            Integer classId = classOf.remove(id);
+            if (classId != null) removeFrom(classId, id);
+        }
+    }
+
+    @Override
+    public void deleteMaterial(Integer classId, Integer materialId) {
+        Map<String, Entry> chunks = byClass.get(classId);
+        if (chunks == null) return;
+        chunks.entrySet().removeIf(e -> {
+            Object mid = e.getValue().metadata().get("material_id");
+            boolean match = mid instanceof Number n && n.intValue() == materialId;
+            if (match) classOf.remove(e.getKey());
+            return match;
+        });
+    }
+
+    @Override
+    public void dropClass(Integer classId) {
+        Map<String, Entry> chunks = byClass.remove(classId);
+        if (chunks != null) chunks.keySet().forEach(classOf::remove);
+    }
+
+    private void removeFrom(Integer classId, String id) {
+        Map<String, Entry> chunks = byClass.get(classId);
+        if (chunks != null) chunks.remove(id);
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = Math.sqrt(dot(v, v));
+        if (norm == 0) return v.clone();
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / norm);
+        return out;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
@@ -0,0 +1,406 @@
+package com.askknightro.askknightro.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load generator for a backend running with SPRING_PROFILES_ACTIVE=loadtest.
+ * Seeds a course with synthetic materials, then drives each endpoint in its own phase at a fixed
+ * request rate and reports p50/p95/p99 latency, throughput and server allocation rate per endpoint.
+ *
+ * <pre>mvn -Ploadtest -DskipTests verify -Dloadtest.args="--rps=20 --duration=60s"</pre>
+ *
+ * With --concurrency=25,50,100 it runs closed-loop instead: for each step, that many clients send
+ * back-to-back requests for step-duration, and the report gives the highest step served with no errors
+ * and p99 within max-p99. Run it once per server configuration (e.g. platform vs virtual threads) with
+ * a --label to tell the reports apart.
+ *
+ * Options (--name=value): base-url, rps, duration, warmup, endpoints (ask,ask-stream,materials),
+ * class-id (default: create a course), seed-docs, doc-chars, student-token, teacher-token,
+ * max-in-flight, seed, out, concurrency, step-duration, max-p99, label.
+ */
+public class LoadDriver {
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, String> opts;
+    private final String baseUrl;
+    private final String studentToken;
+    private final String teacherToken;
+    private final QuestionMix mix;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final AtomicLong uploads = new AtomicLong();
+    private final long seed;
+
+    private LoadDriver(Map<String, String> opts, QuestionMix mix) {
+        this.opts = opts;
+        this.baseUrl = opt("base-url", "http://localhost:8080");
+        this.studentToken = opt("student-token", "student:lt-student");
+        this.teacherToken = opt("teacher-token", "teacher:lt-teacher");
+        this.seed = Long.parseLong(opt("seed", "42"));
+        this.mix = mix;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq < 0) opts.put(arg.substring(2), "true");
+            else opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new LoadDriver(opts, QuestionMix.load()).run();
+    }
+
+    private void run() throws Exception {
+        int rps = Integer.parseInt(opt("rps", "10"));
+        Duration duration = DurationStyle.detectAndParse(opt("duration", "60s"));
+        Duration warmup = DurationStyle.detectAndParse(opt("warmup", "10s"));
+        int maxInFlight = Integer.parseInt(opt("max-in-flight", "256"));
+        List<String> endpoints = List.of(opt("endpoints", "ask,ask-stream,materials").split(","));
+
+        int classId = opts.containsKey("class-id") ? Integer.parseInt(opts.get("class-id")) : createCourse();
+        seedMaterials(classId, Integer.parseInt(opt("seed-docs", "20")));
+
+        if (opts.containsKey("concurrency")) {
+            runRamp(classId, warmup);
+            return;
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String endpoint : endpoints) {
+            Request request = requestFor(endpoint.trim(), classId);
+
+            System.out.printf("%s: warm-up %ss%n", endpoint, warmup.toSeconds());
+            runPhase(new EndpointStats(endpoint), request, rps, warmup, maxInFlight);
+
+            System.out.printf("%s: %d rps for %ss%n", endpoint, rps, duration.toSeconds());
+            EndpointStats stats = new EndpointStats(endpoint);
+            long allocatedBefore = allocatedBytes();
+            runPhase(stats, request, rps, duration, maxInFlight);
+            long allocatedAfter = allocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) stats.allocatedBytes = allocatedAfter - allocatedBefore;
+            results.add(stats.summary());
+        }
+
+        print(results);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("baseUrl", baseUrl);
+        report.put("label", opt("label", ""));
+        report.put("classId", classId);
+        report.put("rps", rps);
+        report.put("durationSec", duration.toSeconds());
+        report.put("endpoints", results);
+        write(report);
+    }
+
+    // Closed-loop concurrency ramp on one endpoint (default ask): finds how many simultaneous requests
+    // the server sustains before it errors or the tail passes max-p99
+    private void runRamp(int classId, Duration warmup) throws Exception {
+        String endpoint = opt("endpoints", "ask").split(",")[0].trim();
+        Duration step = DurationStyle.detectAndParse(opt("step-duration", "30s"));
+        Duration maxP99 = DurationStyle.detectAndParse(opt("max-p99", "5s"));
+        List<Integer> levels = Arrays.stream(opt("concurrency", "").split(",")).map(String::trim).map(Integer::parseInt).toList();
+        Request request = requestFor(endpoint, classId);
+
+        System.out.printf("%s: warm-up %ss with %d clients%n", endpoint, warmup.toSeconds(), levels.get(0));
+        runClosedLoop(new EndpointStats(endpoint), request, levels.get(0), warmup);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        int sustained = 0;
+        for (int clients : levels) {
+            System.out.printf("%s: %d concurrent clients for %ss%n", endpoint, clients, step.toSeconds());
+            EndpointStats stats = new EndpointStats(endpoint + " x" + clients);
+            runClosedLoop(stats, request, clients, step);
+            Map<String, Object> summary = stats.summary();
+            summary.put("concurrency", clients);
+            results.add(summary);
+            boolean ok = stats.errors.get() == 0 && (double) summary.get("p99Ms") <= maxP99.toMillis();
+            if (ok) sustained = clients;
+        }
+
+        print(results);
+        System.out.printf("%nMax concurrency with no errors and p99 <= %d ms: %s%n",
+                maxP99.toMillis(), sustained > 0 ? sustained : "none");
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("baseUrl", baseUrl);
+        report.put("label", opt("label", ""));
+        report.put("classId", classId);
+        report.put("mode", "closed-loop");
+        report.put("stepDurationSec", step.toSeconds());
+        report.put("maxP99Ms", maxP99.toMillis());
+        report.put("maxSustainedConcurrency", sustained);
+        report.put("steps", results);
+        write(report);
+    }
+
+    private void write(Map<String, Object> report) throws IOException {
+        Path out = Path.of(opt("out", "target/loadtest-result.json"));
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        JSON.writeValue(out.toFile(), report);
+        System.out.println("Wrote " + out.toAbsolutePath());
+    }
+
+    // One request against the server; returns whether it succeeded. intended is the scheduled send time.
+    private interface Request {
+        boolean send(long intended, Random rnd, EndpointStats stats) throws Exception;
+    }
+
+    private Request requestFor(String endpoint, int classId) {
+        return switch (endpoint) {
+            case "ask" -> (intended, rnd, stats) -> {
+                HttpResponse<Void> res = http.send(post("/api/ask", studentToken, askBody(classId, rnd)),
+                        HttpResponse.BodyHandlers.discarding());
+                return res.statusCode() == 200;
+            };
+            case "ask-stream" -> (intended, rnd, stats) -> {
+                HttpResponse<InputStream> res = http.send(post("/api/ask/stream", studentToken, askBody(classId, rnd)),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                return res.statusCode() == 200 && readStream(res.body(), intended, stats);
+            };
+            case "materials" -> (intended, rnd, stats) -> upload(classId, rnd.nextLong()) != null;
+            default -> throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        };
+    }
+
+    // Fires requests at a fixed rate regardless of how fast earlier ones complete (open loop)
+    private void runPhase(EndpointStats stats, Request request, int rps, Duration duration, int maxInFlight)
+            throws InterruptedException {
+        long period = TimeUnit.SECONDS.toNanos(1) / rps;
+        long total = duration.toNanos() / period;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService workers = Executors.newCachedThreadPool(daemon("loadtest-worker-"));
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(daemon("loadtest-ticker-"));
+        AtomicLong sent = new AtomicLong();
+        CountDownLatch scheduled = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        ticker.scheduleAtFixedRate(() -> {
+            long seq = sent.getAndIncrement();
+            if (seq >= total) {
+                scheduled.countDown();
+                return;
+            }
+            long intended = start + seq * period;
+            if (!inFlight.tryAcquire()) {
+                // Client-side cap reached: the server is far behind, count it rather than queue forever
+                stats.dropped.incrementAndGet();
+                return;
+            }
+            Random rnd = new Random(seed ^ seq);
+            workers.execute(() -> {
+                try {
+                    if (request.send(intended, rnd, stats)) stats.record(System.nanoTime() - intended);
+                    else stats.errors.incrementAndGet();
+                } catch (Exception e) {
+                    stats.errors.incrementAndGet();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }, 0, period, TimeUnit.NANOSECONDS);
+
+        scheduled.await();
+        ticker.shutdownNow();
+        // Let in-flight requests finish so the tail is measured too
+        if (!inFlight.tryAcquire(maxInFlight, 2, TimeUnit.MINUTES)) {
+            System.out.println("Gave up waiting for " + (maxInFlight - inFlight.availablePermits()) + " requests");
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        workers.shutdownNow();
+    }
+
+    // Each client sends its next request as soon as the previous one returns (closed loop), so exactly
+    // "clients" requests are outstanding for the whole step
+    private void runClosedLoop(EndpointStats stats, Request request, int clients, Duration duration)
+            throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(clients, daemon("loadtest-client-"));
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        AtomicLong seq = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch(clients);
+
+        for (int c = 0; c < clients; c++) {
+            workers.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        Random rnd = new Random(seed ^ seq.getAndIncrement());
+                        try {
+                            if (request.send(sent, rnd, stats)) stats.record(System.nanoTime() - sent);
+                            else stats.errors.incrementAndGet();
+                        } catch (Exception e) {
+                            stats.errors.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        // Requests started before the end of the step are allowed to finish (the client timeout is 2 min)
+        if (!finished.await(duration.toSeconds() + 150, TimeUnit.SECONDS)) {
+            System.out.println("Gave up waiting for " + finished.getCount() + " clients");
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        workers.shutdownNow();
+    }
+
+    // SSE body: records time to the first "token" event; succeeds on "done"
+    private static boolean readStream(InputStream body, long intended, EndpointStats stats) throws IOException {
+        boolean firstToken = true;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (!line.startsWith("event:")) continue;
+                String event = line.substring("event:".length()).trim();
+                if (event.equals("token") && firstToken) {
+                    stats.recordFirstToken(System.nanoTime() - intended);
+                    firstToken = false;
+                } else if (event.equals("done")) {
+                    return true;
+                } else if (event.equals("error")) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int createCourse() throws Exception {
+        String body = JSON.writeValueAsString(Map.of(
+                "courseName", "Load test course",
+                "semester", "Fall",
+                "courseDescription", "Synthetic course created by LoadDriver"));
+        HttpResponse<String> res = http.send(post("/api/users/courses", teacherToken, body), HttpResponse.BodyHandlers.ofString());
+        if (res.statusCode() != 201) throw new IllegalStateException("Course creation failed: " + res.statusCode() + " " + res.body());
+        int classId = JSON.readTree(res.body()).get("classId").asInt();
+        System.out.println("Created course classId=" + classId);
+        return classId;
+    }
+
+    // Uploads synthetic materials and waits for their ingestion jobs, so asks have something to retrieve
+    private void seedMaterials(int classId, int docs) throws Exception {
+        if (docs <= 0) return;
+        System.out.printf("Seeding %d materials into classId=%d%n", docs, classId);
+        List<Integer> jobs = new ArrayList<>();
+        for (int i = 0; i < docs; i++) {
+            Integer job = upload(classId, seed + i);
+            if (job == null) throw new IllegalStateException("Seeding upload " + i + " failed");
+            jobs.add(job);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        for (Integer job : jobs) {
+            while (true) {
+                HttpResponse<String> res = http.send(get("/api/materials/jobs/" + job, teacherToken), HttpResponse.BodyHandlers.ofString());
+                String status = JSON.readTree(res.body()).path("status").asText();
+                if (status.equals("COMPLETED")) break;
+                if (status.equals("FAILED")) throw new IllegalStateException("Seeding job " + job + " failed: " + res.body());
+                if (System.nanoTime() > deadline) throw new IllegalStateException("Seeding timed out on job " + job);
+                Thread.sleep(250);
+            }
+        }
+    }
+
+    // Multipart POST /api/materials; returns the ingestion job id, or null on a non-202
+    private Integer upload(int classId, long docSeed) throws Exception {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        String text = mix.document(Integer.parseInt(opt("doc-chars", "20000")), docSeed);
+        String fileName = "loadtest-" + uploads.incrementAndGet() + ".txt";
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(text.length() + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/api/materials?classId=" + classId))
+                .header("Authorization", "Bearer " + teacherToken)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+        return res.statusCode() == 202 ? JSON.readTree(res.body()).get("jobId").asInt() : null;
+    }
+
+    // Server-side bytes allocated so far (Micrometer's jvm.gc.memory.allocated; advances at each young GC,
+    // which is frequent enough under load to be accurate over a phase). -1 if the metric is unavailable.
+    private long allocatedBytes() {
+        try {
+            HttpResponse<String> res = http.send(get("/api/actuator/metrics/jvm.gc.memory.allocated", studentToken),
+                    HttpResponse.BodyHandlers.ofString());
+            if (res.statusCode() != 200) return -1;
+            JsonNode measurements = JSON.readTree(res.body()).path("measurements");
+            return measurements.isEmpty() ? -1 : measurements.get(0).path("value").asLong();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private String askBody(int classId, Random rnd) throws IOException {
+        return JSON.writeValueAsString(Map.of("classId", classId, "question", mix.next(rnd)));
+    }
+
+    private HttpRequest post(String path, String token, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static void print(List<Map<String, Object>> results) {
+        System.out.printf("%n%-16s %8s %7s %9s %9s %9s %9s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "alloc MB/s", "KB/req");
+        for (Map<String, Object> r : results) {
+            System.out.printf("%-16s %8s %7s %9s %9s %9s %9s %10s %10s%n",
+                    r.get("endpoint"), r.get("requests"), r.get("errors"), r.get("throughputPerSec"),
+                    r.get("p50Ms"), r.get("p95Ms"), r.get("p99Ms"),
+                    r.getOrDefault("allocMBPerSec", "-"), r.getOrDefault("allocKBPerRequest", "-"));
+        }
+    }
+
+    private String opt(String name, String fallback) {
+        return opts.getOrDefault(name, fallback);
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicLong n = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
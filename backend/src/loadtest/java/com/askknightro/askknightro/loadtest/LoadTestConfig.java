@@ -0,0 +1,62 @@
+package com.askknightro.askknightro.loadtest;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+
+// In-process stand-ins for Milvus, Ollama, OpenAI and Cognito (SPRING_PROFILES_ACTIVE=loadtest, built
+// with mvn -Ploadtest; none of this is in the normal artifact).
+// Postgres stays real: the manifest, full-text search and the embedding cache all live there.
+// Beans reuse the production names so everything downstream (the embedding cache, ChatClient,
+// AuthController) wires up exactly as it does against the real services.
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    private static final String ANSWER_SENTENCE =
+            "Based on the course materials, the key idea is to break the problem into smaller steps and check each one. ";
+
+    @Bean
+    public InMemoryChunkStore inMemoryChunkStore() {
+        return new InMemoryChunkStore();
+    }
+
+    // Wrapped by AiConfig's caching model, same as the real Ollama bean
+    @Bean
+    public EmbeddingModel ollamaEmbeddingModel(
+            @Value("${spring.ai.vectorstore.milvus.embedding-dimension:384}") int dimensions,
+            @Value("${askknightro.loadtest.embedding.latency:20ms}") Duration latency) {
+        return new DeterministicEmbeddingModel(dimensions, latency.toMillis());
+    }
+
+    @Bean
+    public ChatModel loadTestChatModel(
+            @Value("${askknightro.loadtest.chat.first-token-latency:400ms}") Duration firstTokenLatency,
+            @Value("${askknightro.loadtest.chat.token-latency:20ms}") Duration tokenLatency,
+            @Value("${askknightro.loadtest.chat.answer-words:120}") int answerWords) {
+        return new DeterministicChatModel(answerOf(answerWords), firstTokenLatency, tokenLatency);
+    }
+
+    @Bean
+    JwtDecoder jwtDecoder(@Value("${cognito.appClientId}") String appClientId) {
+        return new LoadTestJwtDecoder("access", appClientId);
+    }
+
+    @Bean
+    JwtDecoder cognitoIdTokenDecoder(@Value("${cognito.appClientId}") String appClientId) {
+        return new LoadTestJwtDecoder("id", appClientId);
+    }
+
+    private static String answerOf(int words) {
+        StringBuilder sb = new StringBuilder();
+        int sentenceWords = ANSWER_SENTENCE.split(" ").length;
+        for (int n = 0; n < words; n += sentenceWords) sb.append(ANSWER_SENTENCE);
+        return sb.toString().trim();
+    }
+}
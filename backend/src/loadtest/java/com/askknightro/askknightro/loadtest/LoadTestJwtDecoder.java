@@ -0,0 +1,47 @@
+package com.askknightro.askknightro.loadtest;
+
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+// Stand-in for the Cognito decoders: the bearer token "<group>:<username>" (e.g. "student:lt-7",
+// "teacher:lt-prof") becomes a Jwt with that subject and cognito:groups, so role checks still apply.
+// Never signature-checked, which is why it lives in src/loadtest: it is compiled only with the loadtest
+// Maven profile, so the shipped jar has no way to accept these tokens whatever profile is active.
+public class LoadTestJwtDecoder implements JwtDecoder {
+
+    private final String tokenUse;
+    private final String appClientId;
+
+    public LoadTestJwtDecoder(String tokenUse, String appClientId) {
+        this.tokenUse = tokenUse;
+        this.appClientId = appClientId;
+    }
+
+    @Override
+    public Jwt decode(String token) {
+        int sep = token == null ? -1 : token.indexOf(':');
+        if (sep <= 0 || sep == token.length() - 1) {
+            throw new BadJwtException("Load-test tokens look like <group>:<username>");
+        }
+        String group = token.substring(0, sep).toLowerCase(Locale.ROOT);
+        String username = token.substring(sep + 1);
+
+        Instant now = Instant.now();
+        return Jwt.withTokenValue(token)
+                .header("alg", "none")
+                .subject(username)
+                .claim("username", username)
+                .claim("cognito:groups", List.of(group))
+                .claim("token_use", tokenUse)
+                .claim("client_id", appClientId)
+                .audience(List.of(appClientId))
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+    }
+}
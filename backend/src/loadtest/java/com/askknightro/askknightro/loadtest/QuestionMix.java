@@ -0,0 +1,74 @@
+package com.askknightro.askknightro.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Weighted student questions (loadtest/questions.tsv) plus a generator for course-like documents
+// built from the same vocabulary, so seeded materials actually match what gets asked.
+class QuestionMix {
+
+    private final List<String> questions = new ArrayList<>();
+    private final int[] cumulative;
+    private final int totalWeight;
+
+    private QuestionMix(List<String> questions, List<Integer> weights) {
+        this.questions.addAll(questions);
+        this.cumulative = new int[weights.size()];
+        int sum = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            sum += weights.get(i);
+            cumulative[i] = sum;
+        }
+        this.totalWeight = sum;
+    }
+
+    static QuestionMix load() throws IOException {
+        List<String> questions = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        try (InputStream in = QuestionMix.class.getResourceAsStream("/loadtest/questions.tsv")) {
+            if (in == null) throw new IOException("loadtest/questions.tsv not on the classpath");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] parts = line.split("\t", 2);
+                weights.add(Integer.parseInt(parts[0].trim()));
+                questions.add(parts[1].trim());
+            }
+        }
+        return new QuestionMix(questions, weights);
+    }
+
+    String next(Random rnd) {
+        int pick = rnd.nextInt(totalWeight);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (pick < cumulative[i]) return questions.get(i);
+        }
+        return questions.get(questions.size() - 1);
+    }
+
+    // Paragraphs of question words mixed with filler words, roughly chars long
+    String document(int chars, long seed) {
+        Random rnd = new Random(seed);
+        List<String> vocabulary = new ArrayList<>();
+        for (String q : questions) {
+            for (String w : q.split("\\W+")) if (w.length() > 2) vocabulary.add(w.toLowerCase());
+        }
+        String[] filler = {"the", "and", "of", "in", "students", "should", "review", "section", "example", "note"};
+
+        StringBuilder sb = new StringBuilder(chars + 64);
+        int sentence = 0;
+        while (sb.length() < chars) {
+            String w = rnd.nextInt(3) == 0 ? vocabulary.get(rnd.nextInt(vocabulary.size())) : filler[rnd.nextInt(filler.length)];
+            sb.append(w);
+            if (++sentence % 14 == 0) sb.append(sentence % 70 == 0 ? ".\n\n" : ". ");
+            else sb.append(' ');
+        }
+        return sb.toString();
+    }
+}
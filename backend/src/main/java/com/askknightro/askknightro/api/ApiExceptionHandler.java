@@ -2,6 +2,7 @@ package com.askknightro.askknightro.api;
 
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
@@ -23,6 +24,21 @@ public class ApiExceptionHandler {
                 .body(new ApiError("ALREADY_ENROLLED", ex.getMessage()));
     }
 
+    // Bad input that got past binding (unknown sort property, malformed cursor, missing ids)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiError> handleBadRequest(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiError("BAD_REQUEST", ex.getMessage()));
+    }
+
+    // A bounded worker pool or permit is exhausted (e.g. password hashing during a signup burst); the client can retry shortly
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ApiError> handleBusy(TaskRejectedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(new ApiError("BUSY", "Server is busy, please retry shortly."));
+    }
+
     // If DB unique constraint fires, translate to 409 as well
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<ApiError> handleConstraint(DataIntegrityViolationException ex) {
@@ -1,15 +1,19 @@
 package com.askknightro.askknightro.config;
 
+import com.askknightro.askknightro.repository.EmbeddingCacheRepository;
+import com.askknightro.askknightro.service.CachingEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.milvus.client.MilvusClient;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.param.ConnectParam;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
 import org.springframework.ai.embedding.TokenCountBatchingStrategy;
-import org.springframework.ai.ollama.OllamaEmbeddingModel;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.ai.vectorstore.VectorStore;
@@ -28,4 +32,19 @@ public class AiConfig {
         // tune as needed
         return new TokenTextSplitter();
     }
+
+    // Everything that injects EmbeddingModel (vector store, ingest, answer cache) gets the cached one.
+    // Resolved by bean name so the loadtest profile can put its deterministic model in Ollama's place.
+    @Bean
+    @Primary
+    public CachingEmbeddingModel cachingEmbeddingModel(@Qualifier("ollamaEmbeddingModel") EmbeddingModel ollamaEmbeddingModel,
+                                                       EmbeddingCacheRepository embeddingCacheRepository,
+                                                       MeterRegistry meterRegistry,
+                                                       @Value("${spring.ai.ollama.embedding.model:all-minilm}") String model,
+                                                       @Value("${askknightro.embedding-cache.memory-max-entries:20000}") long memoryMaxEntries,
+                                                       @Value("${askknightro.embedding-cache.persistent:true}") boolean persistent,
+                                                       @Value("${askknightro.embedding-cache.encoding:f32}") String encoding) {
+        return new CachingEmbeddingModel(ollamaEmbeddingModel, embeddingCacheRepository, meterRegistry,
+                model, memoryMaxEntries, persistent, encoding);
+    }
 }
@@ -0,0 +1,66 @@
+package com.askknightro.askknightro.config;
+
+import com.askknightro.askknightro.util.ContentHash;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers tokens that passed the delegate's signature check and validators, keyed by the token's
+ * SHA-256, so a client sending the same bearer token on every request is verified once rather than
+ * per request. Size-bounded; an entry lives until the token's exp (capped at max-ttl) and rejected
+ * tokens are never cached, so every failure still goes through the delegate.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> validated;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxEntries, Duration maxTtl,
+                             MeterRegistry meterRegistry, String cacheName) {
+        this.delegate = delegate;
+        this.validated = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                        Instant exp = jwt.getExpiresAt();
+                        if (exp == null) return maxTtl.toNanos();
+                        Duration left = Duration.between(Instant.now(), exp);
+                        return Math.max(0, Math.min(left.toNanos(), maxTtl.toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validated, cacheName);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = ContentHash.sha256Hex(token);
+        Jwt jwt = validated.getIfPresent(key);
+        if (jwt != null) return jwt;
+
+        jwt = delegate.decode(token);
+        validated.put(key, jwt);
+        return jwt;
+    }
+}
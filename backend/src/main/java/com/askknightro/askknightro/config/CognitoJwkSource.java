@@ -0,0 +1,116 @@
+package com.askknightro.askknightro.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cognito signing keys, held in memory. They come from the pool's well-known JWKS URL directly (no OIDC
+ * discovery), or from a local JWKS file when one is configured, so startup never waits on Cognito.
+ * A background thread re-fetches the set every refresh-interval and keeps the old keys if that fails.
+ * A token signed with a key we don't have (Cognito rotated its keys) triggers an immediate re-fetch,
+ * at most once per min-refresh-gap.
+ */
+@Slf4j
+public class CognitoJwkSource implements JWKSource<SecurityContext> {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 2000;
+    private static final int SIZE_LIMIT_BYTES = 64 * 1024;
+
+    private final URL jwksUrl;
+    private final long minRefreshGapNanos;
+    private final AtomicReference<JWKSet> keys = new AtomicReference<>(new JWKSet());
+    private final ThreadPoolTaskScheduler scheduler;
+    // A lock rather than synchronized: a virtual thread blocked on the fetch inside a monitor would pin its carrier
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private long lastFetchNanos;
+
+    public CognitoJwkSource(String issuer, String localFile, Duration refreshInterval, Duration minRefreshGap) {
+        this.jwksUrl = jwksUrl(issuer);
+        this.minRefreshGapNanos = minRefreshGap.toNanos();
+        this.lastFetchNanos = System.nanoTime() - minRefreshGapNanos;
+
+        boolean local = localFile != null && !localFile.isBlank();
+        if (local) {
+            try {
+                keys.set(JWKSet.load(new File(localFile)));
+                log.info("Loaded {} signing key(s) from {}", keys.get().size(), localFile);
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Cannot read JWKS file " + localFile, e);
+            }
+        }
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("jwks-refresh-");
+        scheduler.initialize();
+        // Without a local file the first fetch starts right away, off the startup thread
+        Instant first = local ? Instant.now().plus(refreshInterval) : Instant.now();
+        scheduler.scheduleWithFixedDelay(this::fetch, first, refreshInterval);
+    }
+
+    public void close() {
+        scheduler.shutdown();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> found = jwkSelector.select(keys.get());
+        if (!found.isEmpty()) return found;
+
+        // Unknown kid: re-fetch once (if we haven't just done so) and look again
+        fetchIfStale();
+        return jwkSelector.select(keys.get());
+    }
+
+    private void fetchIfStale() {
+        fetchLock.lock();
+        try {
+            if (System.nanoTime() - lastFetchNanos < minRefreshGapNanos) return;
+            fetch();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void fetch() {
+        fetchLock.lock();
+        try {
+            lastFetchNanos = System.nanoTime();
+            JWKSet set = JWKSet.load(jwksUrl, CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS, SIZE_LIMIT_BYTES);
+            keys.set(set);
+            log.debug("Fetched {} signing key(s) from {}", set.size(), jwksUrl);
+        } catch (IOException | ParseException e) {
+            log.warn("Fetching JWKS from {} failed, keeping {} cached key(s): {}", jwksUrl, keys.get().size(), e.getMessage());
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private static URL jwksUrl(String issuer) {
+        String base = issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer;
+        try {
+            return URI.create(base + "/.well-known/jwks.json").toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid issuer URI " + issuer, e);
+        }
+    }
+}
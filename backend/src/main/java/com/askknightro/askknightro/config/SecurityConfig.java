@@ -3,6 +3,7 @@ package com.askknightro.askknightro.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -19,10 +20,11 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.core.OAuth2Error;
@@ -33,10 +35,21 @@ import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 
+import org.springframework.core.annotation.Order;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.http.HttpMethod;
 import org.springframework.util.CollectionUtils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -63,6 +76,31 @@ public class SecurityConfig {
         return source;
     }
 
+    // Prometheus has no Cognito token, so the scrape endpoint gets its own chain with a basic-auth
+    // user from properties. Without a configured password nobody can read it.
+    @Bean
+    @Order(1)
+    SecurityFilterChain metrics(HttpSecurity http, PasswordEncoder passwordEncoder,
+    @Value("${askknightro.metrics.scrape.username:prometheus}") String username,
+    @Value("${askknightro.metrics.scrape.password:}") String password) throws Exception {
+        http
+        .securityMatcher("/api/actuator/prometheus")
+        .csrf(csrf -> csrf.disable())
+        .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+        .httpBasic(Customizer.withDefaults());
+        if (password.isBlank()) {
+            http.authorizeHttpRequests(auth -> auth.anyRequest().denyAll());
+        } else {
+            http
+            .userDetailsService(new InMemoryUserDetailsManager(User.withUsername(username)
+                .password(passwordEncoder.encode(password))
+                .roles("METRICS")
+                .build()))
+            .authorizeHttpRequests(auth -> auth.requestMatchers(HttpMethod.GET).hasRole("METRICS").anyRequest().denyAll());
+        }
+        return http.build();
+    }
+
     @Bean
     SecurityFilterChain api(HttpSecurity http, JwtDecoder jwtDecoder) throws Exception {
         http
@@ -88,10 +126,32 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // Cognito signing keys, shared by both decoders; the loadtest profile supplies offline decoders instead
+    @Bean
+    @Profile("!loadtest")
+    CognitoJwkSource cognitoJwkSource(
+        @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer,
+        @Value("${askknightro.security.jwks.local-file:}") String localFile,
+        @Value("${askknightro.security.jwks.refresh-interval:1h}") Duration refreshInterval,
+        @Value("${askknightro.security.jwks.min-refresh-gap:30s}") Duration minRefreshGap) {
+        return new CognitoJwkSource(issuer, localFile, refreshInterval, minRefreshGap);
+    }
+
+    // Every authenticated request goes through this one, so validated tokens are cached until they expire
     @Bean
-    JwtDecoder jwtDecoder(@Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer, 
-    @Value("${cognito.appClientId}") String appClientId) {
-        NimbusJwtDecoder decoder = (NimbusJwtDecoder) JwtDecoders.fromIssuerLocation(issuer);
+    @Profile("!loadtest")
+    JwtDecoder jwtDecoder(CognitoJwkSource keys,
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer, 
+    @Value("${cognito.appClientId}") String appClientId,
+    @Value("${askknightro.security.jwt-cache.max-entries:10000}") long cacheMaxEntries,
+    @Value("${askknightro.security.jwt-cache.max-ttl:1h}") Duration cacheMaxTtl,
+    MeterRegistry meterRegistry) {
+        return new CachingJwtDecoder(accessTokenDecoder(keys, issuer, appClientId),
+                cacheMaxEntries, cacheMaxTtl, meterRegistry, "jwt_access_tokens");
+    }
+
+    static NimbusJwtDecoder accessTokenDecoder(JWKSource<SecurityContext> keys, String issuer, String appClientId) {
+        NimbusJwtDecoder decoder = nimbusDecoder(keys);
         var defaultWithIssuer = JwtValidators.createDefaultWithIssuer(issuer);
 
         OAuth2TokenValidator<Jwt> cognitoAccessTokenValidator = jwt -> {
@@ -122,12 +182,14 @@ public class SecurityConfig {
         return decoder;
     }
 
+    // Only used at login, once per ID token, so not worth caching
     @Bean
-    JwtDecoder cognitoIdTokenDecoder(
+    @Profile("!loadtest")
+    JwtDecoder cognitoIdTokenDecoder(CognitoJwkSource keys,
         @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer,
         @Value("${cognito.appClientId}") String appClientId) {
 
-        NimbusJwtDecoder decoder = (NimbusJwtDecoder) JwtDecoders.fromIssuerLocation(issuer);
+        NimbusJwtDecoder decoder = nimbusDecoder(keys);
         var defaultWithIssuer = JwtValidators.createDefaultWithIssuer(issuer);
 
         OAuth2TokenValidator<Jwt> idTokenValidator = jwt -> {
@@ -148,22 +210,39 @@ public class SecurityConfig {
         return decoder;
     }
 
+    // Cognito signs with RS256; claims are checked by the Spring validators set on the decoder
+    private static NimbusJwtDecoder nimbusDecoder(JWKSource<SecurityContext> keys) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, keys));
+        processor.setJWTClaimsSetVerifier((claims, context) -> { });
+        return new NimbusJwtDecoder(processor);
+    }
+
     Converter<Jwt, ? extends AbstractAuthenticationToken> cognitoJwtAuthConverter() {
         JwtGrantedAuthoritiesConverter scopes = new JwtGrantedAuthoritiesConverter();
         scopes.setAuthoritiesClaimName("scope");
         scopes.setAuthorityPrefix("SCOPE_");
 
-        return jwt -> {
-            Collection<GrantedAuthority> authorities = new ArrayList<>(scopes.convert(jwt));
+        // Users share a handful of scope/group combinations, so each one's authorities are built once
+        Cache<List<Object>, Collection<GrantedAuthority>> authorityCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .build();
 
+        return jwt -> {
             Object groupsClaim = jwt.getClaims().get("cognito:groups");
-            if (groupsClaim instanceof Collection<?> groups && !CollectionUtils.isEmpty(groups)) {
-                authorities.addAll(groups.stream()
-                    .map(Object::toString)
-                    .map(String::toUpperCase)
-                    .map(r -> new SimpleGrantedAuthority("ROLE_" + r))
-                    .collect(Collectors.toSet()));
-            }
+            List<Object> key = Arrays.asList(jwt.getClaims().get("scope"), groupsClaim);
+
+            Collection<GrantedAuthority> authorities = authorityCache.get(key, k -> {
+                Collection<GrantedAuthority> built = new ArrayList<>(scopes.convert(jwt));
+                if (groupsClaim instanceof Collection<?> groups && !CollectionUtils.isEmpty(groups)) {
+                    built.addAll(groups.stream()
+                        .map(Object::toString)
+                        .map(String::toUpperCase)
+                        .map(r -> new SimpleGrantedAuthority("ROLE_" + r))
+                        .collect(Collectors.toSet()));
+                }
+                return List.copyOf(built);
+            });
 
             // Prefer Cognito username if present, otherwise subject
             String name = Optional.ofNullable(jwt.getClaimAsString("username"))
@@ -190,8 +269,9 @@ public class SecurityConfig {
         }
     }
 
+    // Work factor 2^strength: each step doubles the cost (10 is ~100 ms per hash on a server core)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${askknightro.credentials.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
\ No newline at end of file
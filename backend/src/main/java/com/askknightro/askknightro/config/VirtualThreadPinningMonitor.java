@@ -0,0 +1,71 @@
+package com.askknightro.askknightro.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Watches for virtual threads pinned to their carrier (blocking inside synchronized or native code) via
+ * the JFR jdk.VirtualThreadPinned event. Every pin longer than the threshold is counted; the first one
+ * from each call site is logged with its stack so the monitor can be replaced with a lock.
+ * Only runs with spring.threads.virtual.enabled.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+
+    private static final int MAX_LOGGED_SITES = 200;
+    private static final int LOGGED_FRAMES = 12;
+
+    private final RecordingStream stream;
+    private final Counter pinned;
+    private final Set<String> loggedSites = ConcurrentHashMap.newKeySet();
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${askknightro.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.pinned = Counter.builder("askknightro.virtual-threads.pinned").register(meterRegistry);
+
+        this.stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+        log.info("Reporting virtual threads pinned for more than {}", threshold);
+    }
+
+    @PreDestroy
+    void close() {
+        stream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        if (event.getStackTrace() == null) return;
+
+        String stack = event.getStackTrace().getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining("\n\tat "));
+        // Keyed by the top frames, so a hot call site is logged once rather than on every request
+        if (loggedSites.size() < MAX_LOGGED_SITES && loggedSites.add(stack)) {
+            log.warn("Virtual thread pinned for {} ms:\n\tat {}", event.getDuration().toMillis(), stack);
+        }
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+}
@@ -3,19 +3,105 @@ package com.askknightro.askknightro.controller;
 import com.askknightro.askknightro.dto.AskRequest;
 import com.askknightro.askknightro.dto.AskResponse;
 import com.askknightro.askknightro.service.AskService;
+import com.askknightro.askknightro.service.ChatMessageService;
+import com.askknightro.askknightro.service.ChatSessionService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
 
 @RequestMapping("/api/ask")
 @RestController
 @RequiredArgsConstructor
+@Slf4j
 public class AskController {
 
+    // Matches spring.ai.openai.restclient.read-timeout plus some headroom
+    private static final long STREAM_TIMEOUT_MS = 90_000L;
+
     private final AskService askService;
+    private final ChatSessionService chatSessionService;
+    private final ChatMessageService chatMessageService;
 
     @PostMapping
     public ResponseEntity<AskResponse> ask(@RequestBody AskRequest req) {
-        return ResponseEntity.ok(askService.answer(req));
+        LocalDateTime askedAt = LocalDateTime.now();
+        boolean save = joinSession(req);
+        AskResponse response = askService.answer(req);
+        if (save) record(req, askedAt, response.getAnswer());
+        return ResponseEntity.ok(response);
+    }
+
+    // SSE: one "sources" event, then "token" events as the model emits them, then a final "done" event
+    // carrying the full answer (or an "error" event if the completion fails midway).
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestBody AskRequest req) {
+        LocalDateTime askedAt = LocalDateTime.now();
+        boolean save = joinSession(req);
+        AskService.AskStream stream = askService.stream(req);
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        StringBuilder answer = new StringBuilder();
+
+        try {
+            emitter.send(SseEmitter.event().name("sources").data(stream.sources(), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+
+        Disposable subscription = stream.tokens().subscribe(
+                token -> {
+                    answer.append(token);
+                    // JSON-wrapped so newlines inside a token can't break SSE framing
+                    send(emitter, "token", Map.of("text", token));
+                },
+                err -> {
+                    log.error("Streaming answer failed for classId={}", req.getClassId(), err);
+                    send(emitter, "error", Map.of("message", "Failed to generate answer"));
+                    emitter.complete();
+                },
+                () -> {
+                    if (save) record(req, askedAt, answer.toString());
+                    send(emitter, "done", AskResponse.builder()
+                            .answer(answer.toString())
+                            .sources(stream.sources())
+                            .build());
+                    emitter.complete();
+                });
+
+        // Client went away or we timed out: stop pulling tokens from the model
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    // saveHistory: the student's open session both answers follow-ups and receives this exchange
+    private boolean joinSession(AskRequest req) {
+        if (!Boolean.TRUE.equals(req.getSaveHistory()) || req.getStudentId() == null || req.getClassId() == null) return false;
+        req.setSessionId(chatSessionService.openSession(req.getStudentId(), req.getClassId()));
+        return true;
+    }
+
+    private void record(AskRequest req, LocalDateTime askedAt, String answer) {
+        chatMessageService.recordExchange(req.getSessionId(), req.getStudentId(), req.getClassId(),
+                req.getQuestion().trim(), askedAt, answer);
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client disconnected (or emitter already completed); onError/onCompletion handle cleanup
+            log.debug("Dropping '{}' event, emitter closed: {}", event, e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -6,10 +6,6 @@ import java.util.Locale;
 import java.util.Optional;
 
 import com.askknightro.askknightro.dto.*;
-import com.askknightro.askknightro.entity.Student;
-import com.askknightro.askknightro.entity.Teacher;
-import com.askknightro.askknightro.repository.StudentRepository;
-import com.askknightro.askknightro.repository.TeacherRepository;
 import com.azure.core.annotation.Get;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -34,9 +30,7 @@ import software.amazon.awssdk.services.cognitoidentityprovider.model.UserNotConf
 @RequiredArgsConstructor
 public class AuthController {
     private final StudentService studentService;
-    private final StudentRepository studentRepository;
     private final TeacherService teacherService;
-    private final TeacherRepository teacherRepository;
     private final CognitoAuthService cognito;         // wraps SignUp/ConfirmSignUp
     private final CognitoAdminService admin;           // for admin operations like adding to groups
     private final JwtDecoder jwtDecoder;        // your ACCESS token decoder (already used by resource server)
@@ -53,7 +47,7 @@ public class AuthController {
             StudentDto.builder()
                 .name(req.name())
                 .email(req.email())
-                .password(req.password())            // will be hashed in service
+                .password(req.password())            // Cognito owns it; see CredentialHashingService
                 .profilePicture(req.profilePicture())
                 .yearStanding(req.yearStanding())
                 .major(req.major())
@@ -68,7 +62,7 @@ public class AuthController {
             TeacherDto.builder()
                 .name(req.name())
                 .email(req.email())
-                .password(req.password())            // will be hashed in service
+                .password(req.password())            // Cognito owns it; see CredentialHashingService
                 .department(req.department())
                 .profilePicture(req.profilePicture())
                 .bio(req.bio())
@@ -108,8 +102,8 @@ public class AuthController {
         if (out.challengeName() != null) return ResponseEntity.status(409).body(out);
 
         try {
+            // Through the resource server's caching decoder, so the client's next requests skip verification
             Jwt at = jwtDecoder.decode(out.accessToken());        // validate + read groups
-            Jwt id = cognitoIdTokenDecoder.decode(out.idToken()); // validate + read name/email
 
             String sub = at.getClaimAsString("sub");
             String username = Optional.ofNullable(at.getClaimAsString("username"))
@@ -118,10 +112,16 @@ public class AuthController {
             @SuppressWarnings("unchecked")
             var groups = (List<String>) at.getClaims().getOrDefault("cognito:groups", List.of());
 
-            String name = Optional.ofNullable(id.getClaimAsString("name")).orElse("");
+            // Known accounts are a cache hit; the ID token is only decoded when a row has to be created
+            boolean newStudent = groups.contains("student") && studentService.findIdByCognitoSub(sub).isEmpty();
+            boolean newTeacher = groups.contains("teacher") && teacherService.findIdByCognitoSub(sub).isEmpty();
+            if (newStudent || newTeacher) {
+                Jwt id = cognitoIdTokenDecoder.decode(out.idToken()); // validate + read name/email
+                String name = Optional.ofNullable(id.getClaimAsString("name")).orElse("");
 
-            if (groups.contains("student"))  studentService.ensureStudentFromLogin(sub, username, email, name);
-            if (groups.contains("teacher"))  teacherService.ensureTeacherFromLogin(sub, username, email, name);
+                if (newStudent) studentService.ensureStudentFromLogin(sub, username, email, name);
+                if (newTeacher) teacherService.ensureTeacherFromLogin(sub, username, email, name);
+            }
         } catch (Exception e) {
             // If decode fails, just skip auto-provision. Client still gets tokens.
         }
@@ -132,21 +132,19 @@ public class AuthController {
     @GetMapping("/profile")
     public ResponseEntity<?> profile (@Valid @RequestParam String sub, @RequestParam String role) {
 
-        Integer id = null;
+        Optional<Integer> id;
         if(role.equals("student")) {
-            Student student = studentRepository.findIdByCognitoSub(sub);
-            id = student.getStudentId();
+            id = studentService.findIdByCognitoSub(sub);
         } else if(role.equals("teacher")) {
-            Teacher teacher = teacherRepository.findIdByCognitoSub(sub);
-            id = teacher.getTeacherId();
+            id = teacherService.findIdByCognitoSub(sub);
         } else {
             throw new IllegalArgumentException("invalid role");
         }
 
-        if(id == null) {
+        if(id.isEmpty()) {
             return ResponseEntity.notFound().build();
         } else {
-            return ResponseEntity.ok().body(id);
+            return ResponseEntity.ok().body(id.get());
         }
 
     }
@@ -1,13 +1,14 @@
 package com.askknightro.askknightro.controller;
 
 import com.askknightro.askknightro.dto.ChatMessageDto;
+import com.askknightro.askknightro.dto.ChatMessagePageDto;
 import com.askknightro.askknightro.service.ChatMessageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("api/messages")
@@ -21,6 +22,8 @@ public class ChatMessageController {
         try {
             ChatMessageDto savedMessage = chatMessageService.saveMessage(messageDto);
             return ResponseEntity.ok().body(savedMessage);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace(); // This will show the error in console
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -28,26 +31,51 @@ public class ChatMessageController {
         }
     }
 
+    // Pages run newest to oldest: pass nextCursor back as ?cursor= to get the next older page
     @GetMapping("/session/{sessionId}")
-    public ResponseEntity<List<ChatMessageDto>> getMessagesBySession(@PathVariable Integer sessionId) {
+    public ResponseEntity<ChatMessagePageDto> getMessagesBySession(
+            @PathVariable Integer sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<ChatMessageDto> messages = chatMessageService.getMessagesBySessionId(sessionId);
-            return ResponseEntity.ok(messages);
+            return ResponseEntity.ok(chatMessageService.getMessagesBySessionId(sessionId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
     @GetMapping("/student/{studentId}/class/{classId}")
-    public ResponseEntity<List<ChatMessageDto>> getMessagesByStudentAndClass(
+    public ResponseEntity<ChatMessagePageDto> getMessagesByStudentAndClass(
             @PathVariable Integer studentId,
-            @PathVariable Integer classId) {
+            @PathVariable Integer classId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<ChatMessageDto> messages = chatMessageService.getMessagesByStudentAndClass(studentId, classId);
-            return ResponseEntity.ok(messages);
+            return ResponseEntity.ok(chatMessageService.getMessagesByStudentAndClass(studentId, classId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
-}
\ No newline at end of file
+
+    // Whole history as one JSON array (oldest first), streamed from the database without buffering it
+    @GetMapping(value = "/session/{sessionId}/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSession(@PathVariable Integer sessionId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> chatMessageService.exportBySessionId(sessionId, out));
+    }
+
+    @GetMapping(value = "/student/{studentId}/class/{classId}/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportStudentClass(
+            @PathVariable Integer studentId,
+            @PathVariable Integer classId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> chatMessageService.exportByStudentAndClass(studentId, classId, out));
+    }
+}
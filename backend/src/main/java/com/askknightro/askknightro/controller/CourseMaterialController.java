@@ -1,7 +1,9 @@
 package com.askknightro.askknightro.controller;
 
 import com.askknightro.askknightro.dto.CourseMaterialDto;
+import com.askknightro.askknightro.dto.IngestionJobDto;
 import com.askknightro.askknightro.service.CourseMaterialService;
+import com.askknightro.askknightro.service.IngestionJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
@@ -20,18 +22,25 @@ import java.util.UUID;
 public class CourseMaterialController {
 
     private final CourseMaterialService courseMaterialService;
+    private final IngestionJobService ingestionJobService;
 
-    // CREATE (existing)
+    // CREATE: 202 + ingestion job; poll GET /jobs/{jobId} for progress
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public ResponseEntity<CourseMaterialDto> create(
+    public ResponseEntity<IngestionJobDto> create(
             @RequestParam Integer classId,
             @RequestPart("file") MultipartFile file,
             @RequestParam(required = false) String name
     ) {
-        CourseMaterialDto dto = courseMaterialService.createCourseMaterial(classId, file, name);
-        return ResponseEntity.ok(dto);
+        IngestionJobDto job = courseMaterialService.createCourseMaterial(classId, file, name);
+        return ResponseEntity.accepted().body(job);
+    }
+
+    // Ingestion job progress (chunks done/total, failure reason)
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJobDto> getJob(@PathVariable Integer jobId) {
+        return ResponseEntity.ok(ingestionJobService.getJob(jobId));
     }
 
     // READ one
@@ -47,12 +56,16 @@ public class CourseMaterialController {
     }
 
     // PATCH: rename and/or replace file (multipart; both optional)
+    // Rename only -> 200 + material; new file -> 202 + re-ingestion job
     @PatchMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<CourseMaterialDto> patch(
+    public ResponseEntity<?> patch(
             @PathVariable Integer id,
             @RequestParam(required = false) String name,
             @RequestPart(value = "file", required = false) MultipartFile newFile) {
-        return ResponseEntity.ok(courseMaterialService.updateMaterial(id, name, newFile));
+        if (newFile == null) {
+            return ResponseEntity.ok(courseMaterialService.updateMaterial(id, name));
+        }
+        return ResponseEntity.accepted().body(courseMaterialService.replaceMaterialFile(id, name, newFile));
     }
 
     // DELETE (soft by default; pass ?hard=true to hard delete)
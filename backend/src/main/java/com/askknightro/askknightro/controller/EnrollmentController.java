@@ -1,9 +1,16 @@
 package com.askknightro.askknightro.controller;
 
 import com.askknightro.askknightro.dto.EnrollmentReqDto;
+import com.askknightro.askknightro.dto.RosterEntryDto;
+import com.askknightro.askknightro.dto.RosterImportResultDto;
 import com.askknightro.askknightro.dto.StudentDto;
 import com.askknightro.askknightro.service.EnrollmentService;
+import com.askknightro.askknightro.service.RosterImportService;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,6 +24,7 @@ public class EnrollmentController
 {
 
     private final EnrollmentService enrollmentService;
+    private final RosterImportService rosterImportService;
 
     // Endpoint for fetching all students of a given course
     @GetMapping("/{course_id}")
@@ -26,6 +34,15 @@ public class EnrollmentController
         return ResponseEntity.ok(studentDtoList);
     }
 
+    // Endpoint for fetching one page of the students of a given course, e.g. ?page=0&size=50&sort=name,asc
+    @GetMapping("/{course_id}/students")
+    public ResponseEntity<PagedModel<StudentDto>> readStudentPage(
+            @PathVariable int course_id,
+            @PageableDefault(size = 50, sort = "name") Pageable pageable)
+    {
+        return ResponseEntity.ok(new PagedModel<>(enrollmentService.readStudentPage(course_id, pageable)));
+    }
+
     // Endpoint for fetching single student of a given course
     @GetMapping("/{course_id}/students/{student_id}")
     public ResponseEntity<StudentDto> readStudent(@PathVariable int course_id, @PathVariable int student_id) {
@@ -41,6 +58,22 @@ public class EnrollmentController
         return ResponseEntity.noContent().build();
     }
 
+    // Endpoint for enrolling a whole roster into a course (JSON array of {studentId | email | schoolId})
+    @PostMapping(value = "/{course_id}/roster", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RosterImportResultDto> importRoster(@PathVariable int course_id,
+                                                              @RequestBody List<RosterEntryDto> roster)
+    {
+        return ResponseEntity.ok(rosterImportService.importRoster(course_id, roster));
+    }
+
+    // Same, from a CSV roster export (header with studentId/email/schoolId columns, or one email per line)
+    @PostMapping(value = "/{course_id}/roster", consumes = "text/csv")
+    public ResponseEntity<RosterImportResultDto> importRosterCsv(@PathVariable int course_id,
+                                                                 @RequestBody String csv)
+    {
+        return ResponseEntity.ok(rosterImportService.importRoster(course_id, rosterImportService.parseCsv(csv)));
+    }
+
     //Endpoint for adding a student to a course
     @PostMapping("/enroll")
     public ResponseEntity<Void> addStudent(@RequestBody EnrollmentReqDto reqDto)
@@ -0,0 +1,34 @@
+package com.askknightro.askknightro.controller;
+
+import com.askknightro.askknightro.dto.VectorIndexStatusDto;
+import com.askknightro.askknightro.service.VectorIndexService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+// Vector index status and rebuild (Cognito group "admin")
+@PreAuthorize("hasRole('ADMIN')")
+@RequestMapping("/api/admin/vector-index")
+@RestController
+@Profile("!loadtest")   // no Milvus index to manage under the in-memory store
+@RequiredArgsConstructor
+public class VectorIndexAdminController {
+
+    private final VectorIndexService vectorIndexService;
+
+    @GetMapping
+    public ResponseEntity<VectorIndexStatusDto> status() {
+        return ResponseEntity.ok(vectorIndexService.status());
+    }
+
+    // Rebuild to the configured profile: 202 + status; 409 if a rebuild is already running
+    @PostMapping("/rebuild")
+    public ResponseEntity<VectorIndexStatusDto> rebuild() {
+        boolean started = vectorIndexService.startRebuild();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(vectorIndexService.status());
+    }
+}
@@ -6,6 +6,8 @@ import lombok.Data;
 public class AskRequest {
     private Integer classId;
     private Integer studentId; // optional; useful for audit later
+    private Integer sessionId; // optional; follow-ups are resolved against this session's history
     private String question;
     private Integer topK; // optional; defaults in service
+    private Boolean saveHistory; // optional; true = store the question and answer in the student's session
 }
\ No newline at end of file
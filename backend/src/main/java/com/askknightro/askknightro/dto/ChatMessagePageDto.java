@@ -0,0 +1,12 @@
+package com.askknightro.askknightro.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+// One page of chat history, oldest first. nextCursor fetches the page of older messages (null at the start).
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class ChatMessagePageDto {
+    private List<ChatMessageDto> messages;
+    private String nextCursor;
+}
@@ -0,0 +1,18 @@
+package com.askknightro.askknightro.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class IngestionJobDto {
+    private Integer jobId;
+    private Integer materialId;
+    private Integer classId;
+    private String kind;
+    private String status;
+    private Integer chunksDone;
+    private Integer chunksTotal;   // null until the whole file has been read
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,12 @@
+package com.askknightro.askknightro.dto;
+
+import lombok.*;
+import java.io.Serializable;
+
+// One roster line: the student is matched by studentId, else email, else schoolId
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class RosterEntryDto implements Serializable {
+    private Integer studentId;
+    private String email;
+    private String schoolId;
+}
@@ -0,0 +1,28 @@
+package com.askknightro.askknightro.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data @Builder
+public class RosterImportResultDto {
+    private Integer classId;
+    private int total;
+    private int enrolled;
+    private int alreadyEnrolled;
+    private int notFound;
+    private int invalid;
+    private List<Row> rows;
+
+    public enum Status { ENROLLED, ALREADY_ENROLLED, DUPLICATE, NOT_FOUND, INVALID }
+
+    // line is 1-based, in the order the roster was sent (CSV header not counted)
+    @Data @Builder
+    public static class Row {
+        private int line;
+        private String key;
+        private Integer studentId;
+        private Status status;
+    }
+}
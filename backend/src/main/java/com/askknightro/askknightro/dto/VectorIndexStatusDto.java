@@ -0,0 +1,16 @@
+package com.askknightro.askknightro.dto;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class VectorIndexStatusDto {
+    private String collection;
+    private String activeType;      // index Milvus actually has (null = none)
+    private String activeParams;    // JSON, as reported by Milvus
+    private String profileType;     // configured askknightro.milvus.index.type
+    private String profileParams;   // JSON
+    private boolean rebuilding;
+    private LocalDateTime lastRebuildAt;
+    private String lastError;
+}
@@ -16,8 +16,8 @@ import java.time.LocalDateTime;
 @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class ChatMessage {
 
+    // Assigned by ChatMessageWriter from chat_message_seq (blocks of 50; see V17) before the row is queued
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "message_id")
     private Integer messageId;
 
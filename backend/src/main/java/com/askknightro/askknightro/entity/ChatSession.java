@@ -34,4 +34,14 @@ public class ChatSession {
 
     @Column(name = "end_time")
     private LocalDateTime endTime;
+
+    // Rolling summary of turns older than the recent window, and the last message folded into it
+    @Column(name = "summary", columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(name = "summary_message_id")
+    private Integer summaryMessageId;
+
+    @Column(name = "summary_timestamp")
+    private LocalDateTime summaryTimestamp;
 }
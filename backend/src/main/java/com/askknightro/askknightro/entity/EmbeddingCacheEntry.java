@@ -0,0 +1,35 @@
+package com.askknightro.askknightro.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Entity @Table(name = "embedding_cache")
+@IdClass(EmbeddingCacheEntry.Key.class)
+public class EmbeddingCacheEntry {
+
+    @Id
+    @Column(name = "model")
+    private String model;
+
+    @Id
+    @Column(name = "text_hash")
+    private String textHash;
+
+    @Column(name = "encoding", nullable = false)
+    private String encoding;
+
+    @Column(name = "dims", nullable = false)
+    private Integer dims;
+
+    @Column(name = "vector", nullable = false)
+    private byte[] vector;
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String model;
+        private String textHash;
+    }
+}
@@ -0,0 +1,72 @@
+package com.askknightro.askknightro.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.time.LocalDateTime;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Entity @Table(name = "ingestion_job")
+@JsonIgnoreProperties({"hibernateLazyInitializer","handler"})
+public class IngestionJob {
+
+    public enum Kind { CREATE, REPLACE }
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    // Why an unfinished job was asked to stop: a newer upload of the material, or the material went away
+    public enum CancelReason { SUPERSEDED, DELETED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "job_id")
+    private Integer jobId;
+
+    @Column(name = "material_id", nullable = false)
+    private Integer materialId;
+
+    @Column(name = "class_id", nullable = false)
+    private Integer classId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(name = "file_path")
+    private String filePath;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "display_name")
+    private String displayName;
+
+    @Column(name = "chunks_done", nullable = false)
+    @Builder.Default
+    private Integer chunksDone = 0;
+
+    @Column(name = "chunks_total")
+    private Integer chunksTotal;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    // Process that claimed the job while RUNNING
+    @Column(name = "worker_id")
+    private String workerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "cancel_reason")
+    private CancelReason cancelReason;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.askknightro.askknightro.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Entity @Table(name = "material_chunk")
+@IdClass(MaterialChunk.Key.class)
+public class MaterialChunk {
+
+    @Id
+    @Column(name = "material_id")
+    private Integer materialId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Column(name = "content_hash", nullable = false)
+    private String contentHash;
+
+    @Column(name = "class_id")
+    private Integer classId;
+
+    // Indexed for full-text search (content_tsv is generated from it in the DB)
+    @Column(name = "content", columnDefinition = "TEXT")
+    private String content;
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Integer materialId;
+        private Integer chunkIndex;
+    }
+
+    // Vector-store id of this chunk: stable per (material, index) so re-writes overwrite in place
+    public static String docId(Integer materialId, int chunkIndex) {
+        return UUID.nameUUIDFromBytes((materialId + ":" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public String docId() {
+        return docId(materialId, chunkIndex);
+    }
+}
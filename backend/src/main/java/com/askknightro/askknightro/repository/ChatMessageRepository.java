@@ -1,14 +1,61 @@
 package com.askknightro.askknightro.repository;
 
 import com.askknightro.askknightro.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Integer> {
-    List<ChatMessage> findBySessionIdOrderByTimestampAsc(Integer sessionId);
 
-    List<ChatMessage> findByStudentIdAndClassIdOrderByTimestampAsc(Integer studentId, Integer classId);
-}
\ No newline at end of file
+    // Keyset page: messages strictly older than (timestamp, messageId), newest first
+    @Query(value = """
+        SELECT * FROM chat_message m
+        WHERE m.student_id = :studentId AND m.class_id = :classId
+          AND (m.timestamp, m.message_id) < (:timestamp, :messageId)
+        ORDER BY m.timestamp DESC, m.message_id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ChatMessage> findStudentClassPageBefore(@Param("studentId") Integer studentId,
+                                                 @Param("classId") Integer classId,
+                                                 @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("messageId") Integer messageId,
+                                                 @Param("limit") int limit);
+
+    @Query(value = """
+        SELECT * FROM chat_message m
+        WHERE m.session_id = :sessionId
+          AND (m.timestamp, m.message_id) < (:timestamp, :messageId)
+        ORDER BY m.timestamp DESC, m.message_id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ChatMessage> findSessionPageBefore(@Param("sessionId") Integer sessionId,
+                                            @Param("timestamp") LocalDateTime timestamp,
+                                            @Param("messageId") Integer messageId,
+                                            @Param("limit") int limit);
+
+    // Most recent turns of a student's conversation, newest first
+    List<ChatMessage> findBySessionIdAndStudentIdOrderByTimestampDescMessageIdDesc(Integer sessionId, Integer studentId, Pageable page);
+
+    // Turns strictly between the summary watermark and the recent window, oldest first (same keyset as the pages)
+    @Query(value = """
+        SELECT * FROM chat_message m
+        WHERE m.session_id = :sessionId AND m.student_id = :studentId
+          AND (m.timestamp, m.message_id) > (:afterTimestamp, :afterMessageId)
+          AND (m.timestamp, m.message_id) < (:beforeTimestamp, :beforeMessageId)
+        ORDER BY m.timestamp, m.message_id
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<ChatMessage> findSessionTurnsBetween(@Param("sessionId") Integer sessionId,
+                                              @Param("studentId") Integer studentId,
+                                              @Param("afterTimestamp") LocalDateTime afterTimestamp,
+                                              @Param("afterMessageId") Integer afterMessageId,
+                                              @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                              @Param("beforeMessageId") Integer beforeMessageId,
+                                              @Param("limit") int limit);
+}
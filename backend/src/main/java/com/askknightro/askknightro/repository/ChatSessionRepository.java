@@ -4,6 +4,11 @@ import com.askknightro.askknightro.entity.ChatSession;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, Integer> {
-}
\ No newline at end of file
+
+    // The (at most one) open session of a student's conversation in a class
+    Optional<ChatSession> findFirstByStudentStudentIdAndCourseClassClassIdAndEndTimeIsNull(Integer studentId, Integer classId);
+}
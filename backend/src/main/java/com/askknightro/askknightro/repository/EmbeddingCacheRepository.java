@@ -0,0 +1,32 @@
+package com.askknightro.askknightro.repository;
+
+import com.askknightro.askknightro.entity.EmbeddingCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmbeddingCacheRepository extends JpaRepository<EmbeddingCacheEntry, EmbeddingCacheEntry.Key> {
+
+    List<EmbeddingCacheEntry> findByModelAndTextHashIn(String model, Collection<String> textHashes);
+
+    // Two instances may embed the same text at once; first writer wins, no constraint error
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO embedding_cache (model, text_hash, encoding, dims, vector)
+            VALUES (:model, :textHash, :encoding, :dims, :vector)
+            ON CONFLICT (model, text_hash) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("model") String model,
+                       @Param("textHash") String textHash,
+                       @Param("encoding") String encoding,
+                       @Param("dims") int dims,
+                       @Param("vector") byte[] vector);
+}
@@ -1,17 +1,51 @@
 package com.askknightro.askknightro.repository;
 
 import com.askknightro.askknightro.entity.Enrollment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface EnrollmentRepository extends JpaRepository<Enrollment, Integer> {
 
+    // Student columns of a class roster, read straight off the enrollment -> student join
+    interface EnrolledStudent {
+        Integer getStudentId();
+        String getName();
+        String getEmail();
+        String getProfilePicture();
+        String getYearStanding();
+        String getMajor();
+        LocalDate getGradDate();
+        String getSchoolId();
+        String getUniversityCollege();
+    }
+
+    // Every selected column is aliased by its property name, so Sort/Pageable can order by any of them
+    String ENROLLED_STUDENTS = """
+            select s.studentId as studentId, s.name as name, s.email as email,
+                   s.profilePicture as profilePicture, s.yearStanding as yearStanding, s.major as major,
+                   s.gradDate as gradDate, s.schoolId as schoolId, s.universityCollege as universityCollege
+              from Enrollment e join e.student s
+             where e.courseClass.classId = :classId
+            """;
+
+    // Roster of a class in one query
+    @Query(ENROLLED_STUDENTS)
+    List<EnrolledStudent> findStudentsByClassId(@Param("classId") Integer classId, Sort sort);
+
+    @Query(value = ENROLLED_STUDENTS,
+           countQuery = "select count(e) from Enrollment e where e.courseClass.classId = :classId")
+    Page<EnrolledStudent> findStudentsByClassId(@Param("classId") Integer classId, Pageable pageable);
+
     // List all enrollments by class_id
     @Query(value = "SELECT * FROM enrollment e WHERE e.class_id = :classId", nativeQuery = true)
     List<Enrollment> findAllByClassIdNative(@Param("classId") Integer classId);
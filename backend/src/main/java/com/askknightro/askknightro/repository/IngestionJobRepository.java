@@ -0,0 +1,109 @@
+package com.askknightro.askknightro.repository;
+
+import com.askknightro.askknightro.entity.IngestionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Integer> {
+
+    // Unfinished jobs to pick up again after a restart
+    List<IngestionJob> findByStatusInOrderByJobIdAsc(Collection<IngestionJob.Status> statuses);
+
+    // Progress checkpoint after each inserted batch
+    @Modifying
+    @Transactional
+    @Query("update IngestionJob j set j.chunksDone = :done, j.updatedAt = CURRENT_TIMESTAMP where j.jobId = :jobId")
+    int updateProgress(@Param("jobId") Integer jobId, @Param("done") Integer done);
+
+    /**
+     * Atomically claims a job for this worker: a QUEUED one, or one left RUNNING by another (stopped)
+     * process. Returns 0 if someone else got it first; throws DataIntegrityViolationException while
+     * another job of the same material is RUNNING (unique index).
+     */
+    default int claim(Integer jobId, String workerId) {
+        return claim(jobId, workerId, IngestionJob.Status.QUEUED, IngestionJob.Status.RUNNING);
+    }
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update IngestionJob j
+               set j.status = :running, j.workerId = :workerId, j.updatedAt = CURRENT_TIMESTAMP
+             where j.jobId = :jobId
+               and (j.status = :queued or (j.status = :running and (j.workerId is null or j.workerId <> :workerId)))
+            """)
+    int claim(@Param("jobId") Integer jobId, @Param("workerId") String workerId,
+              @Param("queued") IngestionJob.Status queued, @Param("running") IngestionJob.Status running);
+
+    // Still this worker's and not asked to stop: checked before every write of a running job
+    default boolean isClaimed(Integer jobId, String workerId) {
+        return isClaimed(jobId, workerId, IngestionJob.Status.RUNNING);
+    }
+
+    @Query("""
+            select count(j) > 0 from IngestionJob j
+             where j.jobId = :jobId and j.workerId = :workerId and j.status = :running and j.cancelReason is null
+            """)
+    boolean isClaimed(@Param("jobId") Integer jobId, @Param("workerId") String workerId,
+                      @Param("running") IngestionJob.Status running);
+
+    // Asks every unfinished job of a material (but one) to stop; each records CANCELLED when its worker stops
+    default int requestCancel(Integer materialId, Integer exceptJobId, IngestionJob.CancelReason reason) {
+        return requestCancel(materialId, exceptJobId, reason, List.of(IngestionJob.Status.QUEUED, IngestionJob.Status.RUNNING));
+    }
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update IngestionJob j
+               set j.cancelReason = :reason, j.updatedAt = CURRENT_TIMESTAMP
+             where j.materialId = :materialId and j.jobId <> :exceptJobId
+               and j.status in :unfinished and j.cancelReason is null
+            """)
+    int requestCancel(@Param("materialId") Integer materialId, @Param("exceptJobId") Integer exceptJobId,
+                      @Param("reason") IngestionJob.CancelReason reason,
+                      @Param("unfinished") Collection<IngestionJob.Status> unfinished);
+
+    default int requestCancelForClass(Integer classId, IngestionJob.CancelReason reason) {
+        return requestCancelForClass(classId, reason, List.of(IngestionJob.Status.QUEUED, IngestionJob.Status.RUNNING));
+    }
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update IngestionJob j
+               set j.cancelReason = :reason, j.updatedAt = CURRENT_TIMESTAMP
+             where j.classId = :classId and j.status in :unfinished and j.cancelReason is null
+            """)
+    int requestCancelForClass(@Param("classId") Integer classId, @Param("reason") IngestionJob.CancelReason reason,
+                              @Param("unfinished") Collection<IngestionJob.Status> unfinished);
+
+    // Queued jobs of a deleted material or class, whose staged files can go straight away
+    List<IngestionJob> findByMaterialIdAndStatus(Integer materialId, IngestionJob.Status status);
+
+    List<IngestionJob> findByClassIdAndStatus(Integer classId, IngestionJob.Status status);
+
+    // Next job waiting on a material whose running job just ended
+    Optional<IngestionJob> findFirstByMaterialIdAndStatusOrderByJobIdAsc(Integer materialId, IngestionJob.Status status);
+
+    // Final state; written with an update so a hard-deleted (cascaded) row isn't re-inserted by a merge
+    @Modifying
+    @Transactional
+    @Query("""
+            update IngestionJob j
+               set j.status = :status, j.error = :error, j.chunksDone = :done, j.chunksTotal = :total,
+                   j.workerId = null, j.updatedAt = CURRENT_TIMESTAMP
+             where j.jobId = :jobId
+            """)
+    int finish(@Param("jobId") Integer jobId, @Param("status") IngestionJob.Status status, @Param("error") String error,
+               @Param("done") Integer done, @Param("total") Integer total);
+}
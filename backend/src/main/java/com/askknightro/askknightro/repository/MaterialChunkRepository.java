@@ -0,0 +1,63 @@
+package com.askknightro.askknightro.repository;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MaterialChunkRepository extends JpaRepository<MaterialChunk, MaterialChunk.Key> {
+
+    // Any material's chunks with these hashes (unchanged-chunk check + cross-material vector reuse)
+    List<MaterialChunk> findByContentHashIn(Collection<String> contentHashes);
+
+    // Chunks past the end of a re-uploaded file
+    List<MaterialChunk> findByMaterialIdAndChunkIndexGreaterThanEqual(Integer materialId, Integer fromIndex);
+
+    boolean existsByMaterialId(Integer materialId);
+
+    interface LexicalHit {
+        Integer getMaterialId();
+        Integer getChunkIndex();
+        String getContent();
+        String getName();
+        Double getRank();
+    }
+
+    // Full-text match within a class. Query terms are OR-ed (plainto_tsquery ANDs them), so a question
+    // that merely mentions "CDA 3103" or "Dijkstra" still matches; ts_rank_cd rewards chunks hitting more terms.
+    @Query(value = """
+            WITH q AS (
+                SELECT CAST(replace(CAST(plainto_tsquery('english', :query) AS text), '&', '|') AS tsquery) AS tsq
+            )
+            SELECT c.material_id AS materialId, c.chunk_index AS chunkIndex, c.content AS content,
+                   m.name AS name, ts_rank_cd(c.content_tsv, q.tsq) AS rank
+              FROM material_chunk c
+              JOIN course_material m ON m.id = c.material_id
+              CROSS JOIN q
+             WHERE c.class_id = :classId
+               AND m.is_deleted IS NOT TRUE
+               AND c.content_tsv @@ q.tsq
+             ORDER BY rank DESC
+             LIMIT :limit
+            """, nativeQuery = true)
+    List<LexicalHit> searchLexical(@Param("classId") Integer classId,
+                                   @Param("query") String query,
+                                   @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query("delete from MaterialChunk c where c.materialId = :materialId and c.chunkIndex >= :fromIndex")
+    int deleteTail(@Param("materialId") Integer materialId, @Param("fromIndex") Integer fromIndex);
+
+    @Modifying
+    @Transactional
+    @Query("delete from MaterialChunk c where c.materialId = :materialId")
+    int deleteByMaterialId(@Param("materialId") Integer materialId);
+}
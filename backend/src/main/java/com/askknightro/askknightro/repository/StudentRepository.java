@@ -3,6 +3,8 @@ package com.askknightro.askknightro.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import com.askknightro.askknightro.entity.Student;
 
@@ -15,4 +17,7 @@ public interface StudentRepository extends JpaRepository<Student, Integer>
     boolean existsByCognitoSub(String cognitoSub);
     Optional<Student> findByEmail(String email);
     Student findIdByCognitoSub(String cognitoSub);
+
+    @Query("select s.studentId from Student s where s.cognitoSub = :sub")
+    Optional<Integer> findStudentIdByCognitoSub(@Param("sub") String cognitoSub);
 }
@@ -5,6 +5,8 @@ import com.askknightro.askknightro.entity.Teacher;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 // Interface for data interaction for the Teacher table in Postgres (gives us access to CRUD functionality)
@@ -15,4 +17,7 @@ public interface TeacherRepository extends JpaRepository<Teacher, Integer>
     boolean existsByCognitoSub(String cognitoSub);
     Optional<Teacher> findByEmail(String email);
     Teacher findIdByCognitoSub(String cognitoSub);
+
+    @Query("select t.teacherId from Teacher t where t.cognitoSub = :sub")
+    Optional<Integer> findTeacherIdByCognitoSub(@Param("sub") String cognitoSub);
 }
@@ -1,20 +1,22 @@
-// AskService.java
 package com.askknightro.askknightro.service;
 
 import com.askknightro.askknightro.dto.AskRequest;
 import com.askknightro.askknightro.dto.AskResponse;
-import com.askknightro.askknightro.entity.Course;
-import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.askknightro.askknightro.dto.CourseDto;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.milvus.MilvusSearchRequest;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,109 +26,237 @@ public class AskService {
 
     private static final int DEFAULT_TOPK = 24;      // more recall
     private static final double THRESH = 0.25;       // ignore weak matches
-    private static final int CONTEXT_CAP = 20;       // cap chunks sent to LLM
-    private static final int SNIPPET_CHARS = 700;    // ~200–300 tokens/chunk
+    private static final int RRF_K = 60;             // reciprocal-rank-fusion damping
 
-    private final VectorStore vectorStore;
-    private final ChatClient.Builder chatClientBuilder;
-    private final CourseManagementRepository courseManagementRepository;
-
-    private ChatClient chat() { return chatClientBuilder.build(); }
-
-    public AskResponse answer(AskRequest req) {
-        Integer classId = Objects.requireNonNull(req.getClassId(), "classId required");
-        String question = Objects.requireNonNull(req.getQuestion(), "question required").trim();
-        if (question.isEmpty()) throw new IllegalArgumentException("question required");
-
-        int topK = (req.getTopK() == null || req.getTopK() < 1) ? DEFAULT_TOPK : Math.min(req.getTopK(), 50);
-
-        // --- 1) Milvus search (no grouping, no per-material caps)
-        MilvusSearchRequest search = MilvusSearchRequest.milvusBuilder()
-                .query(question)
-                .topK(topK)
-                .nativeExpression("metadata['classId'] == " + classId)
-                .similarityThreshold(THRESH)
-                .searchParamsJson("{\"nprobe\":128}")
-                .build();
-
-        List<Document> hits = vectorStore.similaritySearch(search);
-
-        // --- 2) Build flat context from top CONTEXT_CAP
-        List<Document> contextDocs = hits.stream().limit(CONTEXT_CAP).toList();
-
-        String context = contextDocs.stream()
-                .map(d -> {
-                    String name = String.valueOf(d.getMetadata().getOrDefault("name", ""));
-                    Integer mid = ((Number) d.getMetadata().getOrDefault("material_id", -1)).intValue();
-                    String content = d.getText();
-                    String snippet = content.length() > SNIPPET_CHARS ? content.substring(0, SNIPPET_CHARS) + "…" : content;
-                    return "Source [" + mid + " | " + name + "]: " + snippet;
-                })
-                .collect(Collectors.joining("\n\n"));
-
-        Course course = courseManagementRepository.findById(classId)
-                .orElseThrow(() -> new RuntimeException("Course not found: " + classId));
-        String courseName = course.getCourseName();
-
-        // --- 3) System + user messages (unchanged style you liked)
-        String system = """
+    private static final String SYSTEM_PROMPT = """
         You are AskKnightro, the student's course assistant.
-        
+
         GOALS
         - Answer the student's question directly and succinctly (3–7 sentences unless the question asks for steps).
         - Use ONLY the retrieved course materials when they contain the answer.
         - If the materials do not cover it, say so clearly, then give a short “General background” answer (Don't label it).
-        
+
         STYLE
         - Speak to the student (“you”).
         - Be concrete. Use short bullets or a short list if the student asks for steps/definitions/comparisons.
         - If you quote, keep it short (≤2 lines) and attribute by name (e.g., “(Syllabus)” or file name). No IDs.
         - Do NOT fabricate citations, page numbers, or content.
-        
+
         CONTENT RULES
         - Prefer the provided excerpts; only use prior knowledge if they don't answer it.
         - If nothing relevant is found, start with: “I couldn’t find this in the provided materials.” Then give a brief, helpful background.
         - If the question seems ambiguous, state your assumption first.
         - Never include instructions or metadata in the reply.
         - Make sure to return answers as markdown-formatted text.
-        
+
         OUTPUT
         - Return only the final answer text.
         """;
 
+    private final ChunkStore chunkStore;
+    private final EmbeddingModel embeddingModel;
+    private final ChatClient.Builder chatClientBuilder;
+    private final CourseCatalog courseCatalog;
+    private final SemanticAnswerCache answerCache;
+    private final LexicalSearchService lexicalSearchService;
+    private final RagMetrics metrics;
+    private final ContextPacker contextPacker;
+    private final ConversationMemory conversationMemory;
+
+    private ChatClient chat() { return chatClientBuilder.build(); }
+
+    /** Sources are known before the first token; the answer arrives as a token stream. */
+    public record AskStream(List<AskResponse.Source> sources, Flux<String> tokens) {}
+
+    /** What retrieval hands to the LLM call: the rendered user prompt plus the source list. */
+    private record Retrieval(String userPrompt, List<AskResponse.Source> sources) {}
+
+    public AskResponse answer(AskRequest req) {
+        Integer classId = Objects.requireNonNull(req.getClassId(), "classId required");
+        String question = questionOf(req);
+
+        // Follow-ups ("and the second one?") are resolved against the session before anything is looked up
+        ConversationMemory.History history = conversationMemory.load(classId, req.getSessionId(), req.getStudentId(), question);
+        String query = conversationMemory.standaloneQuery(classId, history, question);
+
+        // Near-identical question already answered for this class?
+        SemanticAnswerCache.Lookup cached = lookupCached(classId, query, history);
+        if (cached.hit()) {
+            conversationMemory.afterAnswer(classId, history);
+            return cached.response();
+        }
+
+        Retrieval r = retrieve(classId, question, query, history, topKOf(req));
+
+        ChatResponse completion = metrics.timeAsk("llm", classId,
+                () -> chat().prompt().system(SYSTEM_PROMPT).user(r.userPrompt()).call().chatResponse());
+        metrics.recordUsage(classId, completion);
+        String answer = RagMetrics.textOf(completion);
+
+        AskResponse response = AskResponse.builder().answer(answer).sources(r.sources()).build();
+        answerCache.put(classId, cached, response);
+        conversationMemory.afterAnswer(classId, history);
+        return response;
+    }
+
+    // Same retrieval as answer(), but the completion is streamed instead of awaited
+    public AskStream stream(AskRequest req) {
+        Integer classId = Objects.requireNonNull(req.getClassId(), "classId required");
+        String question = questionOf(req);
+
+        ConversationMemory.History history = conversationMemory.load(classId, req.getSessionId(), req.getStudentId(), question);
+        String query = conversationMemory.standaloneQuery(classId, history, question);
+
+        SemanticAnswerCache.Lookup cached = lookupCached(classId, query, history);
+        if (cached.hit()) {
+            conversationMemory.afterAnswer(classId, history);
+            return new AskStream(cached.response().getSources(), Flux.just(cached.response().getAnswer()));
+        }
+
+        Retrieval r = retrieve(classId, question, query, history, topKOf(req));
+
+        // "llm_first_token" is time to first token, "llm" the whole completion (both from subscription)
+        AtomicReference<Timer.Sample> started = new AtomicReference<>();
+        AtomicBoolean firstToken = new AtomicBoolean();
+        AtomicReference<ChatResponse> last = new AtomicReference<>();
+        StringBuilder answer = new StringBuilder();
+        Flux<String> tokens = chat().prompt().system(SYSTEM_PROMPT).user(r.userPrompt()).stream().chatResponse()
+                .doOnSubscribe(s -> started.set(metrics.start()))
+                .doOnNext(last::set)
+                .<String>handle((chunk, sink) -> {
+                    String text = RagMetrics.textOf(chunk);
+                    if (text != null && !text.isEmpty()) sink.next(text);
+                })
+                .doOnNext(token -> {
+                    if (firstToken.compareAndSet(false, true)) {
+                        metrics.stopAsk(started.get(), "llm_first_token", classId, true);
+                        started.set(metrics.start());   // keep measuring the rest under "llm"
+                    }
+                    answer.append(token);
+                })
+                .doOnError(e -> metrics.stopAsk(started.get(), "llm", classId, false))
+                .doOnComplete(() -> {
+                    metrics.stopAsk(started.get(), "llm", classId, true);
+                    metrics.recordUsage(classId, last.get());   // usage arrives on the final chunk
+                    answerCache.put(classId, cached,
+                            AskResponse.builder().answer(answer.toString()).sources(r.sources()).build());
+                    conversationMemory.afterAnswer(classId, history);
+                });
+
+        return new AskStream(r.sources(), tokens);
+    }
+
+    // An answer given with conversation history depends on that history, not just the query: such
+    // answers are neither served from the class-wide cache nor stored in it (put ignores SKIPPED)
+    private SemanticAnswerCache.Lookup lookupCached(Integer classId, String query, ConversationMemory.History history) {
+        if (!history.isEmpty()) return SemanticAnswerCache.Lookup.SKIPPED;
+        return metrics.timeAsk("answer_cache", classId, () -> answerCache.lookup(classId, query));
+    }
+
+    private static String questionOf(AskRequest req) {
+        String question = Objects.requireNonNull(req.getQuestion(), "question required").trim();
+        if (question.isEmpty()) throw new IllegalArgumentException("question required");
+        return question;
+    }
+
+    private static int topKOf(AskRequest req) {
+        return (req.getTopK() == null || req.getTopK() < 1) ? DEFAULT_TOPK : Math.min(req.getTopK(), 50);
+    }
+
+    // question is what the student typed; query is what gets searched (the standalone rewrite of a follow-up)
+    private Retrieval retrieve(Integer classId, String question, String query,
+                               ConversationMemory.History history, int topK) {
+        // --- 1) Full-text search runs in the background while Milvus is queried
+        CompletableFuture<List<Document>> lexical = lexicalSearchService.searchAsync(classId, query, topK);
+
+        // Milvus search in the class's own partition (no grouping, no per-material caps).
+        // The question embedding is usually a cache hit: the answer cache just embedded it.
+        List<Document> dense;
+        try {
+            float[] vector = metrics.timeAsk("embed", classId, () -> embeddingModel.embed(query));
+            dense = metrics.timeAsk("vector_search", classId, () -> chunkStore.search(classId, vector, topK, THRESH));
+        } catch (RuntimeException e) {
+            // e.g. Milvus unreachable: answer from full-text hits alone
+            log.warn("Vector search failed for classId={}, using lexical results only: {}", classId, e.getMessage());
+            dense = List.of();
+        }
+
+        // Only the part of the full-text search that outlasted the Milvus search adds latency; bounded by
+        // the lexical timeout (counted from submission), after which the result is empty
+        List<Document> lexicalHits = metrics.timeAsk("lexical_wait", classId, lexical::join);
+        List<Document> hits = fuse(dense, lexicalHits);
+        metrics.recordAsk("hits", classId, "source", "dense", dense.size());
+        metrics.recordAsk("hits", classId, "source", "lexical", lexicalHits.size());
+        metrics.recordAsk("hits", classId, "source", "fused", hits.size());
+
+        // --- 2) Pack the best non-redundant chunks into the context token budget
+        ContextPacker.Packed packed = metrics.timeAsk("pack", classId, () -> contextPacker.pack(hits));
+        String context = packed.text();
+        metrics.recordAsk("context.chunks", classId, "kind", "sent", packed.chunks().size());
+        metrics.recordAsk("context.chars", classId, "kind", "sent", context.length());
+        metrics.recordAsk("context.tokens", classId, "kind", "sent", packed.tokens());
+
+        CourseDto course = metrics.timeAsk("course_lookup", classId, () -> courseCatalog.find(classId))
+                .orElseThrow(() -> new RuntimeException("Course not found: " + classId));
+        String courseName = course.getCourseName();
+
+        // --- 3) User message (system prompt is SYSTEM_PROMPT above)
+        String conversation = conversationMemory.render(history);
         String user = """
                 Student question:
                 \"%s\"
 
                 Course context: classId=%d courseName=%s
-
+                %s
                 Retrieved course materials (may be partial):
                 %s
-                """.formatted(question, classId, courseName, context.isBlank() ? "(none)" : context);
+                """.formatted(question, classId, courseName,
+                conversation.isEmpty() ? "" : "\nConversation so far (the question may refer to it):\n" + conversation + "\n",
+                context.isBlank() ? "(none)" : context);
+
+        // Sources are what the model was actually shown
+        return new Retrieval(user, toSources(packed.chunks()));
+    }
 
-        String answer = chat().prompt().system(system).user(user).call().content();
+    // Reciprocal rank fusion: each chunk scores sum(1 / (RRF_K + rank)) over the lists it appears in.
+    // Rank-based, so cosine scores and ts_rank values never have to be put on one scale.
+    static List<Document> fuse(List<Document> dense, List<Document> lexical) {
+        if (lexical.isEmpty()) return dense;
 
-        // --- 4) Return answer + a lightweight source list (one per material, best by score)
+        Map<String, Document> byId = new LinkedHashMap<>();
+        Map<String, Double> fused = new HashMap<>();
+        for (List<Document> list : List.of(dense, lexical)) {
+            for (int rank = 0; rank < list.size(); rank++) {
+                Document d = list.get(rank);
+                byId.putIfAbsent(d.getId(), d);   // dense copy wins: it carries the similarity score
+                fused.merge(d.getId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        }
+        return byId.values().stream()
+                .sorted(Comparator.comparingDouble((Document d) -> fused.get(d.getId())).reversed())
+                .toList();
+    }
+
+    // --- 4) Lightweight source list (one per material, best by score, in fused order)
+    static List<AskResponse.Source> toSources(List<Document> hits) {
         Map<Integer, List<Document>> byMaterial = hits.stream()
-                .collect(Collectors.groupingBy(d -> ((Number)d.getMetadata().getOrDefault("material_id", -1)).intValue()));
+                .collect(Collectors.groupingBy(d -> ((Number)d.getMetadata().getOrDefault("material_id", -1)).intValue(),
+                        LinkedHashMap::new, Collectors.toList()));
 
-        List<AskResponse.Source> sources = byMaterial.entrySet().stream()
-                .map(e -> e.getValue().stream().max(Comparator.comparingDouble(this::scoreOf)).map(best -> AskResponse.Source.builder()
+        return byMaterial.entrySet().stream()
+                .map(e -> e.getValue().stream().max(Comparator.comparingDouble(AskService::scoreOf)).map(best -> AskResponse.Source.builder()
                         .materialId(e.getKey())
                         .name(String.valueOf(best.getMetadata().getOrDefault("name","")))
                         .fileName(String.valueOf(best.getMetadata().getOrDefault("fileName","")))
-                        .score(scoreOf(best))
+                        .score(Math.max(scoreOf(best), 0.0))   // lexical-only matches have no similarity
                         .snippet(best.getText().substring(0, Math.min(best.getText().length(), 240)))
                         .build()).orElse(null))
                 .filter(Objects::nonNull)
-                .sorted(Comparator.comparingDouble(AskResponse.Source::getScore).reversed())
                 .limit(8)
                 .toList();
-
-        return AskResponse.builder().answer(answer).sources(sources).build();
     }
 
-    private double scoreOf(Document d) {
+    static double scoreOf(Document d) {
         Object dist = d.getMetadata().get("distance");  // prefer distance if present
         if (dist instanceof Number n) return 1.0 - n.doubleValue();
         Object s = d.getMetadata().getOrDefault("_score", d.getMetadata().get("score"));
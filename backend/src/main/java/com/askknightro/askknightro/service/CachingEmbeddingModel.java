@@ -0,0 +1,196 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.EmbeddingCacheEntry;
+import com.askknightro.askknightro.repository.EmbeddingCacheRepository;
+import com.askknightro.askknightro.util.ContentHash;
+import com.askknightro.askknightro.util.VectorCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedding model decorator that remembers vectors by (model, SHA-256 of text).
+ * Lookups go memory -> Postgres -> delegate; all misses of one request are embedded in a single
+ * delegate call, and a text already being embedded by another thread is awaited rather than re-sent.
+ * Registered as the primary EmbeddingModel in AiConfig, so ingest, the vector store and the answer
+ * cache all go through it.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCacheRepository repository;
+    private final String defaultModel;
+    private final boolean persistent;
+    private final String encoding;
+
+    private final Cache<Key, float[]> memory;
+    private final Map<Key, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter memoryHits;
+    private final Counter dbHits;
+    private final Counter misses;
+    private final Counter delegateCalls;
+
+    private record Key(String model, String textHash) {}
+
+    public CachingEmbeddingModel(EmbeddingModel delegate,
+                                 EmbeddingCacheRepository repository,
+                                 MeterRegistry meterRegistry,
+                                 String defaultModel,
+                                 long memoryMaxEntries,
+                                 boolean persistent,
+                                 String encoding) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.defaultModel = defaultModel;
+        this.persistent = persistent;
+        this.encoding = VectorCodec.F16.equals(encoding) ? VectorCodec.F16 : VectorCodec.F32;
+
+        this.memory = Caffeine.newBuilder().maximumSize(memoryMaxEntries).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "embeddings");
+
+        this.memoryHits = Counter.builder("askknightro.embedding.cache.requests").tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        this.dbHits = Counter.builder("askknightro.embedding.cache.requests").tag("result", "hit").tag("tier", "db").register(meterRegistry);
+        this.misses = Counter.builder("askknightro.embedding.cache.requests").tag("result", "miss").tag("tier", "none").register(meterRegistry);
+        this.delegateCalls = Counter.builder("askknightro.embedding.model.calls").register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String model = (request.getOptions() != null && request.getOptions().getModel() != null)
+                ? request.getOptions().getModel() : defaultModel;
+        List<String> texts = request.getInstructions();
+        float[][] out = new float[texts.size()][];
+
+        // 1) memory; duplicates within the request collapse onto one key
+        Map<Key, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            Key key = new Key(model, ContentHash.sha256Hex(texts.get(i)));
+            float[] v = memory.getIfPresent(key);
+            if (v != null) {
+                out[i] = v;
+                memoryHits.increment();
+            } else {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // 2) Postgres, one query for all memory misses
+        if (persistent && !missing.isEmpty()) {
+            dbHits.increment(fillFromDb(model, missing, out));
+        }
+
+        // 3) delegate, single-flight per key
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            embedMissing(request, texts, missing, out);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(out.length);
+        for (int i = 0; i < out.length; i++) embeddings.add(new Embedding(out[i], i));
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    // Fills hits into out and removes them from missing; returns how many keys were found
+    private int fillFromDb(String model, Map<Key, List<Integer>> missing, float[][] out) {
+        List<String> hashes = missing.keySet().stream().map(Key::textHash).toList();
+        List<EmbeddingCacheEntry> rows;
+        try {
+            rows = repository.findByModelAndTextHashIn(model, hashes);
+        } catch (RuntimeException e) {
+            // The cache must never take embedding down with it
+            log.warn("Embedding cache lookup failed, falling back to the model: {}", e.getMessage());
+            return 0;
+        }
+
+        int found = 0;
+        for (EmbeddingCacheEntry row : rows) {
+            Key key = new Key(model, row.getTextHash().trim());
+            List<Integer> positions = missing.remove(key);
+            if (positions == null) continue;
+            float[] v = VectorCodec.decode(row.getVector(), row.getEncoding(), row.getDims());
+            memory.put(key, v);
+            for (int i : positions) out[i] = v;
+            found++;
+        }
+        return found;
+    }
+
+    private void embedMissing(EmbeddingRequest request, List<String> texts, Map<Key, List<Integer>> missing, float[][] out) {
+        Map<Key, CompletableFuture<float[]>> waits = new LinkedHashMap<>();
+        Map<Key, CompletableFuture<float[]>> owned = new LinkedHashMap<>();
+        for (Key key : missing.keySet()) {
+            CompletableFuture<float[]> mine = new CompletableFuture<>();
+            CompletableFuture<float[]> other = inFlight.putIfAbsent(key, mine);
+            waits.put(key, other != null ? other : mine);
+            if (other == null) owned.put(key, mine);
+        }
+
+        if (!owned.isEmpty()) {
+            List<Key> keys = new ArrayList<>(owned.keySet());
+            try {
+                List<String> batch = keys.stream().map(k -> texts.get(missing.get(k).get(0))).toList();
+                delegateCalls.increment();
+                EmbeddingResponse response = delegate.call(new EmbeddingRequest(batch, request.getOptions()));
+                for (int j = 0; j < keys.size(); j++) {
+                    float[] v = response.getResults().get(j).getOutput();
+                    memory.put(keys.get(j), v);
+                    owned.get(keys.get(j)).complete(v);
+                }
+            } catch (RuntimeException e) {
+                owned.values().forEach(f -> f.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+            if (persistent) persist(keys);
+        }
+
+        for (Map.Entry<Key, CompletableFuture<float[]>> e : waits.entrySet()) {
+            float[] v;
+            try {
+                v = e.getValue().join();
+            } catch (CompletionException ce) {
+                throw (ce.getCause() instanceof RuntimeException re) ? re : ce;
+            }
+            for (int i : missing.get(e.getKey())) out[i] = v;
+        }
+    }
+
+    private void persist(List<Key> keys) {
+        for (Key key : keys) {
+            float[] v = memory.getIfPresent(key);
+            if (v == null) continue;
+            try {
+                repository.insertIfAbsent(key.model(), key.textHash(), encoding, v.length, VectorCodec.encode(v, encoding));
+            } catch (RuntimeException e) {
+                log.warn("Could not persist cached embedding: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+}
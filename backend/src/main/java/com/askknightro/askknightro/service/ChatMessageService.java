@@ -1,38 +1,55 @@
 package com.askknightro.askknightro.service;
 
 import com.askknightro.askknightro.dto.ChatMessageDto;
+import com.askknightro.askknightro.dto.ChatMessagePageDto;
 import com.askknightro.askknightro.entity.ChatMessage;
-import com.askknightro.askknightro.entity.ChatSession;
 import com.askknightro.askknightro.repository.ChatMessageRepository;
-import com.askknightro.askknightro.repository.ChatSessionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class ChatMessageService {
 
+    private static final String STUDENT = "STUDENT";
+    private static final String AI = "AI";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final String EXPORT_COLUMNS =
+            "SELECT message_id, session_id, student_id, class_id, sender_type, content, timestamp FROM chat_message";
+
     private final ChatMessageRepository chatMessageRepository;
-    private final ChatSessionRepository chatSessionRepository;
+    private final ChatSessionService chatSessionService;
+    private final ChatMessageWriter chatMessageWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
 
     public ChatMessageDto saveMessage(ChatMessageDto messageDto) {
-        // Ensure ChatSession with ID 1 exists
-        if (!chatSessionRepository.existsById(1)) {
-            ChatSession defaultSession = ChatSession.builder()
-                    .startTime(LocalDateTime.now())
-                    .build();
-            chatSessionRepository.save(defaultSession);
-        }
+        // The conversation's open session, usually already known in memory
+        Integer sessionId = chatSessionService.openSession(messageDto.getStudentId(), messageDto.getClassId());
 
         // Create new chat message
         ChatMessage chatMessage = ChatMessage.builder()
-                .sessionId(1)
+                .sessionId(sessionId)
                 .studentId(messageDto.getStudentId())
                 .classId(messageDto.getClassId())
                 .senderType(messageDto.getSenderType())
@@ -40,52 +57,147 @@ public class ChatMessageService {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        // Save to database
-        ChatMessage savedMessage = chatMessageRepository.save(chatMessage);
+        // Queued for a batched insert; the writer assigns the id before queueing, so the response has it
+        chatMessageWriter.write(List.of(chatMessage));
 
         // Convert back to DTO
-        return ChatMessageDto.builder()
-                .messageId(savedMessage.getMessageId())
-                .sessionId(savedMessage.getSessionId())
-                .studentId(savedMessage.getStudentId())
-                .classId(savedMessage.getClassId())
-                .senderType(savedMessage.getSenderType())
-                .content(savedMessage.getContent())
-                .timestamp(savedMessage.getTimestamp())
+        return toDto(chatMessage);
+    }
+
+    /** A question and its answer from /api/ask, written in the same batch. */
+    public void recordExchange(Integer sessionId, Integer studentId, Integer classId,
+                               String question, LocalDateTime askedAt, String answer) {
+        chatMessageWriter.write(List.of(
+                ChatMessage.builder()
+                        .sessionId(sessionId)
+                        .studentId(studentId)
+                        .classId(classId)
+                        .senderType(STUDENT)
+                        .content(question)
+                        .timestamp(askedAt)
+                        .build(),
+                ChatMessage.builder()
+                        .sessionId(sessionId)
+                        .studentId(studentId)
+                        .classId(classId)
+                        .senderType(AI)
+                        .content(answer)
+                        .timestamp(LocalDateTime.now())
+                        .build()));
+    }
+
+    /** Page of a session's history ending just before the cursor (the latest messages when cursor is null). */
+    @Transactional(readOnly = true)
+    public ChatMessagePageDto getMessagesBySessionId(Integer sessionId, String cursor, Integer limit) {
+        Cursor before = Cursor.decode(cursor);
+        int size = pageSize(limit);
+        return toPage(chatMessageRepository.findSessionPageBefore(
+                sessionId, before.timestamp(), before.messageId(), size + 1), size);
+    }
+
+    @Transactional(readOnly = true)
+    public ChatMessagePageDto getMessagesByStudentAndClass(Integer studentId, Integer classId, String cursor, Integer limit) {
+        Cursor before = Cursor.decode(cursor);
+        int size = pageSize(limit);
+        return toPage(chatMessageRepository.findStudentClassPageBefore(
+                studentId, classId, before.timestamp(), before.messageId(), size + 1), size);
+    }
+
+    // Full history as a JSON array, oldest first, written row by row from a server-side cursor
+    @Transactional(readOnly = true)
+    public void exportBySessionId(Integer sessionId, OutputStream out) throws IOException {
+        export(EXPORT_COLUMNS + " WHERE session_id = ? ORDER BY timestamp, message_id", out, sessionId);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportByStudentAndClass(Integer studentId, Integer classId, OutputStream out) throws IOException {
+        export(EXPORT_COLUMNS + " WHERE student_id = ? AND class_id = ? ORDER BY timestamp, message_id",
+                out, studentId, classId);
+    }
+
+    private void export(String sql, OutputStream out, Object... args) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);   // the container owns the response stream
+            json.writeStartArray();
+            // Postgres only streams with a fetch size inside a transaction; otherwise it buffers every row
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(EXPORT_FETCH_SIZE);
+                for (int i = 0; i < args.length; i++) ps.setObject(i + 1, args[i]);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    json.writeObject(ChatMessageDto.builder()
+                            .messageId(rs.getInt("message_id"))
+                            .sessionId((Integer) rs.getObject("session_id"))
+                            .studentId((Integer) rs.getObject("student_id"))
+                            .classId((Integer) rs.getObject("class_id"))
+                            .senderType(rs.getString("sender_type"))
+                            .content(rs.getString("content"))
+                            .timestamp(rs.getObject("timestamp", LocalDateTime.class))
+                            .build());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);   // client went away; aborts the query
+                }
+            });
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int pageSize(Integer limit) {
+        return (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // Rows come newest first with one extra to tell whether older messages remain
+    private static ChatMessagePageDto toPage(List<ChatMessage> rows, int size) {
+        boolean more = rows.size() > size;
+        List<ChatMessage> page = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        String next = more ? Cursor.of(page.get(page.size() - 1)).encode() : null;
+        Collections.reverse(page);
+        return ChatMessagePageDto.builder()
+                .messages(page.stream().map(ChatMessageService::toDto).toList())
+                .nextCursor(next)
                 .build();
     }
 
-    public List<ChatMessageDto> getMessagesBySessionId(Integer sessionId) {
-        List<ChatMessage> messages = chatMessageRepository.findBySessionIdOrderByTimestampAsc(sessionId);
-
-        return messages.stream()
-                .map(message -> ChatMessageDto.builder()
-                        .messageId(message.getMessageId())
-                        .sessionId(message.getSessionId())
-                        .studentId(message.getStudentId())
-                        .classId(message.getClassId())
-                        .senderType(message.getSenderType())
-                        .content(message.getContent())
-                        .timestamp(message.getTimestamp())
-                        .build())
-                .collect(Collectors.toList());
+    private static ChatMessageDto toDto(ChatMessage message) {
+        return ChatMessageDto.builder()
+                .messageId(message.getMessageId())
+                .sessionId(message.getSessionId())
+                .studentId(message.getStudentId())
+                .classId(message.getClassId())
+                .senderType(message.getSenderType())
+                .content(message.getContent())
+                .timestamp(message.getTimestamp())
+                .build();
     }
 
-    // Add method to get messages by student and class
-    public List<ChatMessageDto> getMessagesByStudentAndClass(Integer studentId, Integer classId) {
-        List<ChatMessage> messages = chatMessageRepository
-                .findByStudentIdAndClassIdOrderByTimestampAsc(studentId, classId);
-
-        return messages.stream()
-                .map(message -> ChatMessageDto.builder()
-                        .messageId(message.getMessageId())
-                        .sessionId(message.getSessionId())
-                        .studentId(message.getStudentId())
-                        .classId(message.getClassId())
-                        .senderType(message.getSenderType())
-                        .content(message.getContent())
-                        .timestamp(message.getTimestamp())
-                        .build())
-                .collect(Collectors.toList());
+    // Opaque keyset position: "<timestamp>|<messageId>", base64url-encoded
+    record Cursor(LocalDateTime timestamp, Integer messageId) {
+
+        // Sorts after every stored message, so the first page is just "before the end"
+        static final Cursor END = new Cursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Integer.MAX_VALUE);
+
+        static Cursor of(ChatMessage m) {
+            return new Cursor(m.getTimestamp(), m.getMessageId());
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return END;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), Integer.valueOf(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        String encode() {
+            String raw = timestamp + "|" + messageId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for chat messages. Callers enqueue and return; one flusher thread drains the
+ * queue into a single transaction per batch, flushing once batch-size messages are waiting or
+ * flush-interval has passed since the first of them. Messages enqueued together (a question and
+ * its answer) always land in the same batch.
+ * Ids are taken from chat_message_seq on the caller's thread before a message is queued, so the caller
+ * can return it straight away and the flusher never touches a message after it's handed over.
+ * The queue is bounded: when it's full the caller waits briefly, then writes its own messages
+ * synchronously rather than dropping them. On shutdown the queue is drained before the app stops.
+ */
+@Service
+@Slf4j
+public class ChatMessageWriter {
+
+    // Ids per nextval('chat_message_seq'); must match INCREMENT BY in V17
+    static final int ID_BLOCK = 50;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration offerTimeout;
+
+    private final BlockingQueue<List<ChatMessage>> queue;
+    private final ThreadPoolTaskExecutor flusher;
+    private volatile boolean running = true;
+
+    // Current block of ids: nextId..blockEnd, guarded by this
+    private int nextId = 1;
+    private int blockEnd = 0;
+
+    private final Counter written;
+    private final Counter failed;
+    private final Counter overflow;
+    private final Timer flushTimer;
+
+    public ChatMessageWriter(EntityManager entityManager,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${askknightro.chat.write-behind.capacity:5000}") int capacity,
+                             @Value("${askknightro.chat.write-behind.batch-size:50}") int batchSize,
+                             @Value("${askknightro.chat.write-behind.flush-interval:250ms}") Duration flushInterval,
+                             @Value("${askknightro.chat.write-behind.offer-timeout:100ms}") Duration offerTimeout) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeout = offerTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.written = Counter.builder("askknightro.chat.write-behind.messages").tag("result", "written").register(meterRegistry);
+        this.failed = Counter.builder("askknightro.chat.write-behind.messages").tag("result", "failed").register(meterRegistry);
+        this.overflow = Counter.builder("askknightro.chat.write-behind.overflow").register(meterRegistry);
+        this.flushTimer = Timer.builder("askknightro.chat.write-behind.flush").register(meterRegistry);
+        Gauge.builder("askknightro.chat.write-behind.queued", queue, BlockingQueue::size).register(meterRegistry);
+
+        this.flusher = new ThreadPoolTaskExecutor();
+        flusher.setCorePoolSize(1);
+        flusher.setMaxPoolSize(1);
+        flusher.setThreadNamePrefix("chat-writer-");
+        flusher.setWaitForTasksToCompleteOnShutdown(true);
+        flusher.setAwaitTerminationSeconds(30);
+        flusher.initialize();
+        flusher.execute(this::drainLoop);
+    }
+
+    // Stop taking new work and flush whatever is still queued
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        flusher.shutdown();
+        if (!queue.isEmpty()) {
+            log.warn("Chat writer stopped with {} group(s) still queued, writing them now", queue.size());
+            List<ChatMessage> rest = new ArrayList<>();
+            for (List<ChatMessage> group; (group = queue.poll()) != null; ) rest.addAll(group);
+            persist(rest);
+        }
+    }
+
+    /**
+     * Assigns the messages their ids, then queues them to be inserted together; falls back to a
+     * synchronous insert when the buffer is full.
+     */
+    public void write(List<ChatMessage> messages) {
+        if (messages.isEmpty()) return;
+        assignIds(messages);
+        try {
+            if (running && queue.offer(messages, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        overflow.increment();
+        persist(messages);
+    }
+
+    // The sequence value ends a block of ID_BLOCK ids, as Hibernate's pooled optimizer reads it (see V17)
+    private synchronized void assignIds(List<ChatMessage> messages) {
+        for (ChatMessage m : messages) {
+            if (nextId > blockEnd) {
+                blockEnd = jdbcTemplate.queryForObject("SELECT nextval('chat_message_seq')", Integer.class);
+                nextId = blockEnd - ID_BLOCK + 1;
+            }
+            m.setMessageId(nextId++);
+        }
+    }
+
+    private void drainLoop() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                List<ChatMessage> first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.addAll(first);
+
+                // Gather more until the batch is full or the first message has waited flush-interval
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    List<ChatMessage> next = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.addAll(next);
+                }
+                persist(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: leave what's queued to shutdown(), which writes it on the caller's thread
+                persist(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<ChatMessage> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            // persist, not save: with the id already set, save would merge and select each row first
+            flushTimer.record(() -> transaction.executeWithoutResult(tx -> batch.forEach(entityManager::persist)));
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            // One bad row fails the whole batch: retry one by one so only that row is lost
+            log.warn("Batch insert of {} chat message(s) failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (ChatMessage m : batch) {
+                try {
+                    transaction.executeWithoutResult(tx -> entityManager.persist(m));
+                    written.increment();
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    log.error("Dropping chat message for sessionId={} studentId={}: {}",
+                            m.getSessionId(), m.getStudentId(), single.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.ChatSession;
+import com.askknightro.askknightro.repository.ChatSessionRepository;
+import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.askknightro.askknightro.repository.StudentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chat session lifecycle: one open session per (student, class) conversation, opened by its first
+ * message and closed once no message has arrived for idle-timeout. The open session of each active
+ * conversation is remembered in memory, so saving a message is a plain insert with no session lookup.
+ */
+@Service
+@Slf4j
+public class ChatSessionService {
+
+    private static final String CLOSE_IDLE_SQL = """
+        UPDATE chat_session s
+        SET end_time = COALESCE((SELECT MAX(m.timestamp) FROM chat_message m WHERE m.session_id = s.session_id),
+                                s.start_time)
+        WHERE s.end_time IS NULL
+          AND s.start_time < ?
+          AND NOT EXISTS (SELECT 1 FROM chat_message m WHERE m.session_id = s.session_id AND m.timestamp >= ?)
+        RETURNING s.session_id
+        """;
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final StudentRepository studentRepository;
+    private final CourseManagementRepository courseManagementRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final Duration idleTimeout;
+    private final Duration closeInterval;
+
+    private record Conversation(Integer studentId, Integer classId) {}
+
+    // Forgotten after idle-timeout without a message, i.e. no later than the close job ends the session
+    private final Cache<Conversation, Integer> openSessions;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    public ChatSessionService(ChatSessionRepository chatSessionRepository,
+                              StudentRepository studentRepository,
+                              CourseManagementRepository courseManagementRepository,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${askknightro.chat.session.idle-timeout:30m}") Duration idleTimeout,
+                              @Value("${askknightro.chat.session.close-interval:5m}") Duration closeInterval,
+                              @Value("${askknightro.chat.session.cache-max-entries:100000}") long cacheMaxEntries) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.studentRepository = studentRepository;
+        this.courseManagementRepository = courseManagementRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idleTimeout = idleTimeout;
+        this.closeInterval = closeInterval;
+
+        // A session must be committed before any message references it, whatever the caller's transaction does
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.openSessions = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterAccess(idleTimeout)
+                .build();
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("chat-session-");
+        scheduler.initialize();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startIdleCloser() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                closeIdleSessions();
+            } catch (RuntimeException e) {
+                log.warn("Closing idle chat sessions failed: {}", e.getMessage());
+            }
+        }, closeInterval);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /** Id of the open session for this student's conversation in the class, opening one if needed. */
+    public Integer openSession(Integer studentId, Integer classId) {
+        if (studentId == null || classId == null) {
+            throw new IllegalArgumentException("studentId and classId are required");
+        }
+        // Not openSessions.get(key, loader): the loader would run its queries inside the cache's monitor,
+        // pinning a virtual thread. Two racing misses both reach findOrCreate, and ux_chat_session_open keeps one.
+        Conversation key = new Conversation(studentId, classId);
+        Integer sessionId = openSessions.getIfPresent(key);
+        if (sessionId == null) {
+            sessionId = findOrCreate(studentId, classId);
+            openSessions.put(key, sessionId);
+        }
+        return sessionId;
+    }
+
+    /** Ends sessions with no message for idle-timeout; returns how many were closed. */
+    public int closeIdleSessions() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(idleTimeout));
+        List<Integer> closed = jdbcTemplate.queryForList(CLOSE_IDLE_SQL, Integer.class, cutoff, cutoff);
+        if (closed.isEmpty()) return 0;
+
+        Set<Integer> ids = new HashSet<>(closed);
+        openSessions.asMap().values().removeIf(ids::contains);
+        log.debug("Closed {} idle chat session(s)", closed.size());
+        return closed.size();
+    }
+
+    private Integer findOrCreate(Integer studentId, Integer classId) {
+        return chatSessionRepository.findFirstByStudentStudentIdAndCourseClassClassIdAndEndTimeIsNull(studentId, classId)
+                .map(ChatSession::getSessionId)
+                .orElseGet(() -> create(studentId, classId));
+    }
+
+    private Integer create(Integer studentId, Integer classId) {
+        try {
+            return newTransaction.execute(tx -> chatSessionRepository.save(ChatSession.builder()
+                    .student(studentRepository.getReferenceById(studentId))
+                    .courseClass(courseManagementRepository.getReferenceById(classId))
+                    .startTime(LocalDateTime.now())
+                    .build()).getSessionId());
+        } catch (DataIntegrityViolationException e) {
+            // Another instance opened it first (ux_chat_session_open), or the student/class doesn't exist
+            return chatSessionRepository.findFirstByStudentStudentIdAndCourseClassClassIdAndEndTimeIsNull(studentId, classId)
+                    .map(ChatSession::getSessionId)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Unknown student " + studentId + " or class " + classId));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.askknightro.askknightro.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Where chunk vectors live. MilvusChunkStore in normal runs; the loadtest profile swaps in an
+// in-memory store so the rest of the app (ingest, ask, deletes) runs unchanged without Milvus.
+public interface ChunkStore {
+
+    // Metadata key under which search hits carry their stored vector (float[]), for near-duplicate checks
+    String VECTOR = "vector";
+
+    // Writes chunks with precomputed vectors; ids are stable, so rewriting a chunk replaces it
+    void upsert(List<Document> docs, List<float[]> vectors);
+
+    /**
+     * Nearest chunks of one class by cosine similarity, best first, dropping those below minScore.
+     * Hits carry their metadata plus "distance" (1 - cosine), the score and their vector under {@link #VECTOR}.
+     */
+    List<Document> search(Integer classId, float[] query, int topK, double minScore);
+
+    // A stored vector and the content_hash of the text it was computed from (null for rows without one)
+    record StoredVector(float[] vector, String contentHash) {}
+
+    // Stored vectors for the given chunk ids; unknown ids are simply absent
+    Map<String, StoredVector> fetchVectors(Collection<String> ids);
+
+    void delete(Collection<String> ids);
+
+    void deleteMaterial(Integer classId, Integer materialId);
+
+    void dropClass(Integer classId);
+}
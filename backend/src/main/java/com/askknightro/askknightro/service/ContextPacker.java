@@ -0,0 +1,206 @@
+package com.askknightro.askknightro.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.*;
+
+/**
+ * Turns fused retrieval hits into the "Retrieved course materials" block of the prompt, within a
+ * token budget counted with the chat model's own tokenizer:
+ * - picks chunks by MMR (fused rank vs. similarity to what's already picked), dropping near-duplicates;
+ * - trims over-long chunks at sentence boundaries instead of mid-sentence;
+ * - merges chunks that are neighbours in the same material into one source block.
+ */
+@Component
+public class ContextPacker {
+
+    private static final int MIN_CHUNK_TOKENS = 48;   // not worth a source block below this
+
+    /** The rendered context, the chunks it was built from (in fused order) and its size in tokens. */
+    public record Packed(String text, List<Document> chunks, int tokens) {}
+
+    private final Encoding encoding;
+    private final int tokenBudget;
+    private final int maxChunkTokens;
+    private final double duplicateSimilarity;
+    private final double mmrLambda;
+
+    public ContextPacker(@Value("${spring.ai.openai.chat.options.model:gpt-4o-mini}") String model,
+                         @Value("${askknightro.context.token-budget:2000}") int tokenBudget,
+                         @Value("${askknightro.context.max-chunk-tokens:400}") int maxChunkTokens,
+                         @Value("${askknightro.context.duplicate-similarity:0.95}") double duplicateSimilarity,
+                         @Value("${askknightro.context.mmr-lambda:0.7}") double mmrLambda) {
+        EncodingRegistry registry = Encodings.newDefaultEncodingRegistry();
+        // Unknown model names fall back to the GPT-4o family encoding
+        this.encoding = registry.getEncodingForModel(model).orElseGet(() -> registry.getEncoding(EncodingType.O200K_BASE));
+        this.tokenBudget = tokenBudget;
+        this.maxChunkTokens = maxChunkTokens;
+        this.duplicateSimilarity = duplicateSimilarity;
+        this.mmrLambda = mmrLambda;
+    }
+
+    public Packed pack(List<Document> hits) {
+        List<Candidate> pool = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) pool.add(new Candidate(hits.get(i), i));
+
+        // --- 1) MMR selection until the budget is spent
+        List<Candidate> picked = new ArrayList<>();
+        int used = 0;
+        while (!pool.isEmpty() && tokenBudget - used >= MIN_CHUNK_TOKENS) {
+            Candidate best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Iterator<Candidate> it = pool.iterator(); it.hasNext(); ) {
+                Candidate c = it.next();
+                double redundancy = 0;
+                for (Candidate p : picked) redundancy = Math.max(redundancy, c.similarity(p));
+                if (redundancy >= duplicateSimilarity) {
+                    it.remove();   // says nothing the prompt doesn't already have
+                    continue;
+                }
+                double relevance = 1.0 - (double) c.rank / hits.size();
+                double score = mmrLambda * relevance - (1 - mmrLambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            if (best == null) break;
+            pool.remove(best);
+
+            int header = count(header(best.doc));
+            String text = trim(best.doc.getText(), Math.min(maxChunkTokens, tokenBudget - used - header));
+            if (text.isEmpty()) continue;
+            best.text = text;
+            best.trimmed = text.length() < best.doc.getText().length();
+            used += header + count(text);
+            picked.add(best);
+        }
+
+        // --- 2) Merge runs of consecutive chunks from the same material, ordered by their best rank
+        Map<Integer, List<Candidate>> byMaterial = new HashMap<>();
+        for (Candidate c : picked) byMaterial.computeIfAbsent(c.materialId(), k -> new ArrayList<>()).add(c);
+
+        List<List<Candidate>> blocks = new ArrayList<>();
+        for (List<Candidate> chunks : byMaterial.values()) {
+            chunks.sort(Comparator.comparingInt(Candidate::chunkIndex));
+            List<Candidate> run = new ArrayList<>();
+            for (Candidate c : chunks) {
+                if (!run.isEmpty() && c.chunkIndex() != run.get(run.size() - 1).chunkIndex() + 1) {
+                    blocks.add(run);
+                    run = new ArrayList<>();
+                }
+                run.add(c);
+            }
+            blocks.add(run);
+        }
+        blocks.sort(Comparator.comparingInt(b -> b.stream().mapToInt(c -> c.rank).min().orElse(Integer.MAX_VALUE)));
+
+        StringBuilder out = new StringBuilder();
+        for (List<Candidate> block : blocks) {
+            if (!out.isEmpty()) out.append("\n\n");
+            out.append(header(block.get(0).doc));
+            for (int i = 0; i < block.size(); i++) {
+                if (i > 0) out.append(block.get(i - 1).trimmed ? " … " : "\n");
+                out.append(block.get(i).text);
+            }
+        }
+
+        String text = out.toString();
+        List<Document> chunks = picked.stream()
+                .sorted(Comparator.comparingInt(c -> c.rank))
+                .map(c -> c.doc)
+                .toList();
+        return new Packed(text, chunks, count(text));
+    }
+
+    public int count(String text) {
+        return text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+
+    // Same "Source [material | name]: " prefix the prompt has always used
+    private static String header(Document d) {
+        Integer mid = ((Number) d.getMetadata().getOrDefault("material_id", -1)).intValue();
+        String name = String.valueOf(d.getMetadata().getOrDefault("name", ""));
+        return "Source [" + mid + " | " + name + "]: ";
+    }
+
+    // Longest prefix of whole sentences within maxTokens; a single over-long sentence is cut at a word
+    private String trim(String text, int maxTokens) {
+        if (maxTokens < MIN_CHUNK_TOKENS) return "";
+        if (count(text) <= maxTokens) return text;
+
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        sentences.setText(text);
+        int end = 0;
+        int tokens = 0;
+        for (int next = sentences.next(); next != BreakIterator.DONE; next = sentences.next()) {
+            int t = count(text.substring(end, next));
+            if (tokens + t > maxTokens) break;
+            tokens += t;
+            end = next;
+        }
+        if (end > 0) return text.substring(0, end).trim();
+
+        String cut = encoding.decode(encoding.encode(text, maxTokens).getTokens());
+        int space = cut.lastIndexOf(' ');
+        return (space > 0 ? cut.substring(0, space) : cut) + "…";
+    }
+
+    private static final class Candidate {
+        final Document doc;
+        final int rank;
+        final float[] vector;
+        Set<String> words;
+        String text;
+        boolean trimmed;
+
+        Candidate(Document doc, int rank) {
+            this.doc = doc;
+            this.rank = rank;
+            this.vector = doc.getMetadata().get(ChunkStore.VECTOR) instanceof float[] v ? v : null;
+        }
+
+        int materialId() {
+            return ((Number) doc.getMetadata().getOrDefault("material_id", -1)).intValue();
+        }
+
+        int chunkIndex() {
+            return ((Number) doc.getMetadata().getOrDefault("chunk_index", -1)).intValue();
+        }
+
+        // Cosine of the stored embeddings when both have one (dense hits), else word-set Jaccard
+        double similarity(Candidate other) {
+            if (vector != null && other.vector != null) return cosine(vector, other.vector);
+            Set<String> a = words(), b = other.words();
+            if (a.isEmpty() || b.isEmpty()) return 0;
+            int shared = 0;
+            for (String w : a) if (b.contains(w)) shared++;
+            return (double) shared / (a.size() + b.size() - shared);
+        }
+
+        private Set<String> words() {
+            if (words == null) {
+                words = new HashSet<>();
+                for (String w : doc.getText().toLowerCase(Locale.ROOT).split("\\W+")) if (!w.isEmpty()) words.add(w);
+            }
+            return words;
+        }
+
+        private static double cosine(float[] a, float[] b) {
+            double dot = 0, na = 0, nb = 0;
+            for (int i = 0; i < a.length; i++) {
+                dot += a[i] * b[i];
+                na += a[i] * a[i];
+                nb += b[i] * b[i];
+            }
+            return (na == 0 || nb == 0) ? 0 : dot / Math.sqrt(na * nb);
+        }
+    }
+}
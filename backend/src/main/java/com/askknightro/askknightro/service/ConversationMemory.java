@@ -0,0 +1,325 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.ChatMessage;
+import com.askknightro.askknightro.entity.ChatSession;
+import com.askknightro.askknightro.repository.ChatMessageRepository;
+import com.askknightro.askknightro.repository.ChatSessionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversation state for follow-up questions. A session's last few turns are read from chat_message;
+ * everything older is folded into a short rolling summary stored on chat_session, which is advanced
+ * in the background after each answer rather than rebuilt from the full history. Follow-ups are
+ * rewritten into a standalone retrieval query with one small LLM call, cached per (session, turn, question).
+ */
+@Service
+@Slf4j
+public class ConversationMemory {
+
+    private static final String STUDENT = "STUDENT";
+    private static final int MAX_TURN_CHARS = 600;        // per turn, in the condense and summary prompts
+    private static final int MAX_SUMMARY_CHARS = 2000;
+
+    private static final String CONDENSE_PROMPT = """
+        Rewrite the student's latest message as one standalone search query for the course materials.
+        Resolve pronouns and references ("it", "the second one", "that assignment") using the conversation.
+        If the message is already standalone, return it unchanged.
+        Return only the query, with no quotes or explanation.
+        """;
+
+    private static final String SUMMARY_PROMPT = """
+        You maintain a running summary of a student's conversation with a course assistant.
+        Update the summary with the new turns. Keep the topics, the specific items discussed
+        (assignments, chapters, dates, definitions) and any open questions; drop pleasantries.
+        At most 120 words, plain sentences. Return only the updated summary.
+        """;
+
+    /**
+     * Keyset position of the last message folded into the summary, ordered like the chat pages:
+     * by timestamp, then message id. {@link #START} sorts before every message.
+     */
+    record Watermark(LocalDateTime timestamp, int messageId) {
+
+        static final Watermark START = new Watermark(LocalDateTime.of(1970, 1, 1, 0, 0), 0);
+
+        static Watermark of(ChatSession session) {
+            if (session.getSummaryTimestamp() == null || session.getSummaryMessageId() == null) return START;
+            return new Watermark(session.getSummaryTimestamp(), session.getSummaryMessageId());
+        }
+
+        static Watermark of(ChatMessage m) {
+            return new Watermark(m.getTimestamp(), m.getMessageId());
+        }
+
+        boolean isBefore(Watermark other) {
+            int byTime = timestamp.compareTo(other.timestamp);
+            return byTime < 0 || (byTime == 0 && messageId < other.messageId);
+        }
+    }
+
+    /** The recent turns (oldest first) and rolling summary a question is answered against. */
+    public record History(Integer sessionId, Integer studentId, List<ChatMessage> turns,
+                          String summary, Integer summaryMessageId, Watermark watermark, boolean owned) {
+
+        static final History NONE = new History(null, null, List.of(), null, null, Watermark.START, false);
+
+        public boolean isEmpty() {
+            return turns.isEmpty() && (summary == null || summary.isBlank());
+        }
+
+        Integer lastMessageId() {
+            return turns.isEmpty() ? summaryMessageId : turns.get(turns.size() - 1).getMessageId();
+        }
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatClient.Builder chatClientBuilder;
+    private final ContextPacker contextPacker;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+    private final int recentTurns;
+    private final int historyTokenBudget;
+    private final int foldMaxMessages;
+
+    private final Cache<String, String> condensed;
+    private final Set<Integer> folding = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolTaskExecutor pool;
+
+    public ConversationMemory(ChatMessageRepository chatMessageRepository,
+                              ChatSessionRepository chatSessionRepository,
+                              ChatClient.Builder chatClientBuilder,
+                              ContextPacker contextPacker,
+                              RagMetrics metrics,
+                              MeterRegistry meterRegistry,
+                              @Value("${askknightro.conversation.enabled:true}") boolean enabled,
+                              @Value("${askknightro.conversation.recent-turns:6}") int recentTurns,
+                              @Value("${askknightro.conversation.history-token-budget:600}") int historyTokenBudget,
+                              @Value("${askknightro.conversation.summary-fold-max-messages:40}") int foldMaxMessages,
+                              @Value("${askknightro.conversation.condense-cache-max-entries:10000}") long condenseCacheMaxEntries,
+                              @Value("${askknightro.conversation.condense-cache-ttl:30m}") Duration condenseCacheTtl,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatClientBuilder = chatClientBuilder;
+        this.contextPacker = contextPacker;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.recentTurns = recentTurns;
+        this.historyTokenBudget = historyTokenBudget;
+        this.foldMaxMessages = foldMaxMessages;
+
+        this.condensed = Caffeine.newBuilder()
+                .maximumSize(condenseCacheMaxEntries)
+                .expireAfterWrite(condenseCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, condensed, "condensed_queries");
+
+        // Summaries are best-effort: a small pool, and a full queue just defers the fold to the next turn
+        this.pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(2);
+        pool.setMaxPoolSize(2);
+        pool.setQueueCapacity(200);
+        pool.setThreadNamePrefix("conversation-");
+        pool.setVirtualThreads(virtualThreads);
+        pool.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Recent turns and summary of the student's session, or {@link History#NONE} when the request
+     * has no session/student or the session isn't this student's, including one with no owner. The
+     * question itself is left out if the client already saved it as the newest message.
+     */
+    public History load(Integer classId, Integer sessionId, Integer studentId, String question) {
+        if (!enabled || sessionId == null || studentId == null) return History.NONE;
+
+        return metrics.timeAsk("history", classId, () -> {
+            ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
+            if (session == null) return History.NONE;
+            // Only the session's own student gets its history; an ownerless session isn't shared
+            Integer owner = session.getStudent() == null ? null : session.getStudent().getStudentId();
+            if (!studentId.equals(owner)) return History.NONE;
+
+            List<ChatMessage> turns = new ArrayList<>(chatMessageRepository
+                    .findBySessionIdAndStudentIdOrderByTimestampDescMessageIdDesc(sessionId, studentId, PageRequest.of(0, recentTurns + 1)));
+            if (!turns.isEmpty() && isSameQuestion(turns.get(0), question)) turns.remove(0);
+            if (turns.size() > recentTurns) turns.subList(recentTurns, turns.size()).clear();
+            Collections.reverse(turns);
+
+            return new History(sessionId, studentId, turns,
+                    session.getSummary(), session.getSummaryMessageId(), Watermark.of(session), true);
+        });
+    }
+
+    /** The question as a standalone retrieval query; unchanged (and free) when there's no history. */
+    public String standaloneQuery(Integer classId, History history, String question) {
+        if (history.isEmpty()) return question;
+
+        String key = history.sessionId() + ":" + history.lastMessageId() + ":" + question.toLowerCase(Locale.ROOT);
+        String cached = condensed.getIfPresent(key);
+        if (cached != null) return cached;
+
+        String user = """
+                Conversation so far:
+                %s
+
+                Latest message:
+                %s
+                """.formatted(transcript(history, MAX_TURN_CHARS), question);
+        try {
+            String query = metrics.timeAsk("condense", classId, () -> {
+                ChatResponse response = chatClientBuilder.build().prompt().system(CONDENSE_PROMPT).user(user).call().chatResponse();
+                metrics.recordUsage(classId, response);
+                return RagMetrics.textOf(response);
+            });
+            if (query == null || query.isBlank()) return question;
+            condensed.put(key, query.strip());
+            return query.strip();
+        } catch (RuntimeException e) {
+            // Not cached: the next attempt may succeed
+            log.warn("Condensing follow-up failed for sessionId={}, retrieving with the raw question: {}",
+                    history.sessionId(), e.getMessage());
+            return question;
+        }
+    }
+
+    /** "Conversation so far" block for the answer prompt: the summary, then as many recent turns as fit. */
+    public String render(History history) {
+        if (history.isEmpty()) return "";
+
+        StringBuilder out = new StringBuilder();
+        int used = 0;
+        if (history.summary() != null && !history.summary().isBlank()) {
+            out.append("Summary of earlier turns: ").append(history.summary().strip()).append('\n');
+            used = contextPacker.count(out.toString());
+        }
+
+        // Newest turns matter most: walk backwards until the budget is spent
+        List<String> lines = new ArrayList<>();
+        for (int i = history.turns().size() - 1; i >= 0; i--) {
+            String line = line(history.turns().get(i), MAX_TURN_CHARS);
+            int tokens = contextPacker.count(line);
+            if (used + tokens > historyTokenBudget) break;
+            used += tokens;
+            lines.add(line);
+        }
+        Collections.reverse(lines);
+        lines.forEach(l -> out.append(l).append('\n'));
+        return out.toString().strip();
+    }
+
+    /**
+     * Folds turns that have slid out of the recent window into the session summary, off the request
+     * thread. Only the new turns and the previous summary are sent, so the cost per fold stays flat.
+     */
+    public void afterAnswer(Integer classId, History history) {
+        if (!history.owned() || history.turns().size() < recentTurns) return;
+
+        ChatMessage oldest = history.turns().get(0);
+        if (oldest.getMessageId() == null || oldest.getTimestamp() == null) return;
+        Watermark before = Watermark.of(oldest);
+        Watermark after = history.watermark();
+        if (!after.isBefore(before)) return;
+        if (!folding.add(history.sessionId())) return;   // already being folded by another request
+
+        try {
+            pool.execute(() -> {
+                try {
+                    fold(classId, history.sessionId(), history.studentId(), after, before);
+                } catch (RuntimeException e) {
+                    log.warn("Summarizing sessionId={} failed: {}", history.sessionId(), e.getMessage());
+                } finally {
+                    folding.remove(history.sessionId());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            folding.remove(history.sessionId());
+        }
+    }
+
+    private void fold(Integer classId, Integer sessionId, Integer studentId, Watermark after, Watermark before) {
+        List<ChatMessage> aged = chatMessageRepository.findSessionTurnsBetween(sessionId, studentId,
+                after.timestamp(), after.messageId(), before.timestamp(), before.messageId(), foldMaxMessages);
+        if (aged.isEmpty()) return;
+
+        ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
+        if (session == null || !Watermark.of(session).equals(after)) {
+            return;   // moved on since this fold was scheduled
+        }
+
+        String previous = session.getSummary() == null || session.getSummary().isBlank() ? "(none)" : session.getSummary();
+        StringBuilder turns = new StringBuilder();
+        for (ChatMessage m : aged) turns.append(line(m, MAX_TURN_CHARS)).append('\n');
+        String user = """
+                Current summary:
+                %s
+
+                New turns:
+                %s
+                """.formatted(previous, turns);
+
+        String summary = metrics.timeAsk("summarize", classId, () -> {
+            ChatResponse response = chatClientBuilder.build().prompt().system(SUMMARY_PROMPT).user(user).call().chatResponse();
+            metrics.recordUsage(classId, response);
+            return RagMetrics.textOf(response);
+        });
+        if (summary == null || summary.isBlank()) return;
+
+        String clipped = summary.strip();
+        session.setSummary(clipped.length() > MAX_SUMMARY_CHARS ? clipped.substring(0, MAX_SUMMARY_CHARS) : clipped);
+        ChatMessage last = aged.get(aged.size() - 1);
+        session.setSummaryMessageId(last.getMessageId());
+        session.setSummaryTimestamp(last.getTimestamp());
+        chatSessionRepository.save(session);
+        log.debug("Folded {} turns into summary of sessionId={}", aged.size(), sessionId);
+    }
+
+    private static boolean isSameQuestion(ChatMessage m, String question) {
+        return STUDENT.equalsIgnoreCase(m.getSenderType())
+                && m.getContent() != null
+                && m.getContent().strip().equals(question.strip());
+    }
+
+    private static String transcript(History history, int maxChars) {
+        StringBuilder out = new StringBuilder();
+        if (history.summary() != null && !history.summary().isBlank()) {
+            out.append("Summary of earlier turns: ").append(history.summary().strip()).append('\n');
+        }
+        for (ChatMessage m : history.turns()) out.append(line(m, maxChars)).append('\n');
+        return out.toString().strip();
+    }
+
+    private static String line(ChatMessage m, int maxChars) {
+        String who = STUDENT.equalsIgnoreCase(m.getSenderType()) ? "Student" : "Assistant";
+        String text = m.getContent() == null ? "" : m.getContent().strip().replaceAll("\\s+", " ");
+        if (text.length() > maxChars) text = text.substring(0, maxChars) + "…";
+        return who + ": " + text;
+    }
+}
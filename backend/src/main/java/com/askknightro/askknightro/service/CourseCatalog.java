@@ -0,0 +1,152 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.auth.UserRole;
+import com.askknightro.askknightro.dto.CourseDto;
+import com.askknightro.askknightro.entity.Course;
+import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Read-through cache of course metadata: course by id, class id by enrollment code, and the class ids
+ * on each user's dashboard. Per-user lists hold ids only, so editing a course refreshes one entry,
+ * not every list it appears on. Writers (CourseManagementService, EnrollmentService, roster import)
+ * evict what they touched once their transaction commits; the TTL covers changes made outside the app.
+ * Returned DTOs are shared with the cache and must not be modified.
+ */
+@Service
+public class CourseCatalog {
+
+    private record UserKey(UserRole role, int userId) {}
+
+    private final CourseManagementRepository courseManagementRepository;
+    private final Cache<Integer, CourseDto> byId;
+    private final Cache<String, Integer> idByCode;
+    private final Cache<UserKey, List<Integer>> byUser;
+
+    public CourseCatalog(CourseManagementRepository courseManagementRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${askknightro.course-cache.max-entries:5000}") long maxCourses,
+                         @Value("${askknightro.course-cache.user-lists-max-entries:50000}") long maxUserLists,
+                         @Value("${askknightro.course-cache.ttl:10m}") Duration ttl) {
+        this.courseManagementRepository = courseManagementRepository;
+        this.byId = Caffeine.newBuilder().maximumSize(maxCourses).expireAfterWrite(ttl).recordStats().build();
+        this.idByCode = Caffeine.newBuilder().maximumSize(maxCourses).expireAfterWrite(ttl).recordStats().build();
+        this.byUser = Caffeine.newBuilder().maximumSize(maxUserLists).expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "courses");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByCode, "course_codes");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUser, "user_courses");
+    }
+
+    // Misses query outside the cache rather than through get(key, loader), whose loader runs inside a
+    // monitor and would pin a virtual thread for the length of the query
+    public Optional<CourseDto> find(int classId) {
+        CourseDto cached = byId.getIfPresent(classId);
+        if (cached != null) return Optional.of(cached);
+        Optional<CourseDto> loaded = courseManagementRepository.findById(classId).map(CourseCatalog::toDto);
+        loaded.ifPresent(c -> byId.put(classId, c));
+        return loaded;
+    }
+
+    public Optional<CourseDto> findByEnrollmentCode(String code) {
+        if (code == null) return Optional.empty();
+        Integer classId = idByCode.getIfPresent(code);
+        if (classId != null) return find(classId);
+
+        Optional<CourseDto> loaded = courseManagementRepository.findOptionalByEnrollmentCode(code).map(CourseCatalog::toDto);
+        loaded.ifPresent(c -> {
+            byId.put(c.getClassId(), c);
+            idByCode.put(code, c.getClassId());
+        });
+        return loaded;
+    }
+
+    /** Classes a student is enrolled in, or a teacher teaches, by class id. */
+    public List<CourseDto> coursesOf(int userId, UserRole role) {
+        UserKey key = new UserKey(role, userId);
+        List<Integer> ids = byUser.getIfPresent(key);
+        if (ids == null) {
+            // The list query returns whole rows, so the courses themselves are cached on the way
+            List<Course> courses = switch (role) {
+                case STUDENT -> courseManagementRepository.findAllByStudentId(userId);
+                case TEACHER -> courseManagementRepository.findAllByTeacherId(userId);
+            };
+            List<CourseDto> dtos = courses.stream().map(CourseCatalog::toDto).toList();
+            dtos.forEach(c -> byId.put(c.getClassId(), c));
+            byUser.put(key, dtos.stream().map(CourseDto::getClassId).toList());
+            return dtos;
+        }
+
+        Map<Integer, CourseDto> found = byId.getAll(ids, missing -> {
+            Map<Integer, CourseDto> loaded = new HashMap<>();
+            courseManagementRepository.findAllById(new ArrayList<Integer>(missing)).forEach(c -> loaded.put(c.getClassId(), toDto(c)));
+            return loaded;
+        });
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // ---------- Invalidation (applied after commit when called inside a transaction) ----------
+
+    /** The course's own fields or enrollment code changed. */
+    public void evictCourse(int classId) {
+        afterCommit(() -> {
+            byId.invalidate(classId);
+            idByCode.asMap().values().removeIf(id -> id == classId);
+        });
+    }
+
+    /** The course is gone: also drop every dashboard list that showed it. */
+    public void evictDeletedCourse(int classId) {
+        afterCommit(() -> {
+            byId.invalidate(classId);
+            idByCode.asMap().values().removeIf(id -> id == classId);
+            byUser.asMap().values().removeIf(ids -> ids.contains(classId));
+        });
+    }
+
+    /** The user's set of classes changed (enrolled, dropped, or assigned a course). */
+    public void evictUser(Integer userId, UserRole role) {
+        if (userId == null) return;
+        afterCommit(() -> byUser.invalidate(new UserKey(role, userId)));
+    }
+
+    public void evictUsers(Collection<Integer> userIds, UserRole role) {
+        List<UserKey> keys = userIds.stream().map(id -> new UserKey(role, id)).toList();
+        afterCommit(() -> byUser.invalidateAll(keys));
+    }
+
+    public static CourseDto toDto(Course c)
+    {
+        Integer teacherId = (c.getTeacher() != null ? c.getTeacher().getTeacherId() : null);
+        return CourseDto.builder()
+                .classId(c.getClassId())
+                .enrollmentCode(c.getEnrollmentCode())
+                .courseName(c.getCourseName())
+                .semester(c.getSemester())
+                .teacherId(teacherId)
+                .courseDescription(c.getCourseDescription())
+                .shardId(c.getShardId())
+                .build();
+    }
+
+    // Evicting before commit would let a concurrent reader cache the old row again
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { eviction.run(); }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
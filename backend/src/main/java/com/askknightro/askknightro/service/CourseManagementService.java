@@ -27,6 +27,7 @@ public class CourseManagementService
     private final CourseMaterialRepository courseMaterialRepository;
     private final EnrollmentRepository enrollmentRepository;
     private final CourseMaterialService courseMaterialService;
+    private final CourseCatalog courseCatalog;
 
     @PersistenceContext
     private EntityManager em;
@@ -61,23 +62,19 @@ public class CourseManagementService
         }
 
         Course saved = courseManagementRepository.save(entity);
+        courseCatalog.evictUser(courseDto.getTeacherId(), UserRole.TEACHER);
         return toDto(saved);
     }
 
     // Service method for reading a course
     public CourseDto readCourse(int course_id) {
-        Course c = courseManagementRepository.findById(course_id)
+        return courseCatalog.find(course_id)
                 .orElseThrow(() -> new RuntimeException("Course not found with id: " + course_id));
-        return toDto(c);
     }
 
     // Service method for reading a list of courses
     public List<CourseDto> readCourseList(int user_id, UserRole role) {
-        List<Course> classes = switch (role) {
-            case STUDENT -> courseManagementRepository.findAllByStudentId(user_id);
-            case TEACHER -> courseManagementRepository.findAllByTeacherId(user_id);
-        };
-        return classes.stream().map(this::toDto).toList();
+        return courseCatalog.coursesOf(user_id, role);
     }
 
     // Service method for updating a course
@@ -96,11 +93,15 @@ public class CourseManagementService
         }
 
         if (courseDto.getTeacherId() != null) {
+            // Moving the course changes both teachers' course lists
+            if (entity.getTeacher() != null) courseCatalog.evictUser(entity.getTeacher().getTeacherId(), UserRole.TEACHER);
+            courseCatalog.evictUser(courseDto.getTeacherId(), UserRole.TEACHER);
             Teacher ref = em.getReference(Teacher.class, courseDto.getTeacherId());
             entity.setTeacher(ref);
         }
 
         Course updated = courseManagementRepository.save(entity);
+        courseCatalog.evictCourse(course_id);
         return toDto(updated);
     }
 
@@ -123,22 +124,14 @@ public class CourseManagementService
 
         // 4) Delete the course itself
         courseManagementRepository.deleteById(classId);
+        courseCatalog.evictDeletedCourse(classId);
     }
 
     // Helper methods
 
     private CourseDto toDto(Course c)
     {
-        Integer teacherId = (c.getTeacher() != null ? c.getTeacher().getTeacherId() : null);
-        return CourseDto.builder()
-                .classId(c.getClassId())
-                .enrollmentCode(c.getEnrollmentCode())
-                .courseName(c.getCourseName())
-                .semester(c.getSemester())
-                .teacherId(teacherId)
-                .courseDescription(c.getCourseDescription())
-                .shardId(c.getShardId())
-                .build();
+        return CourseCatalog.toDto(c);
     }
 
     private String generateEnrollmentCode() {
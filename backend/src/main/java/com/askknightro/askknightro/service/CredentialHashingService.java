@@ -0,0 +1,94 @@
+package com.askknightro.askknightro.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing for locally stored credentials. BCrypt runs on the calling request thread, but only
+ * "max-concurrent" callers hash at once, so a signup burst spends that many cores on it and chat traffic
+ * keeps the rest. A caller that can't get a permit within acquire-timeout is turned away (503) rather
+ * than waiting indefinitely. Accounts whose password lives in Cognito aren't hashed at all unless
+ * skip-cognito-managed is turned off.
+ */
+@Service
+public class CredentialHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final boolean skipCognitoManaged;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    private final Timer hashTimer;
+    private final Timer waitTimer;
+    private final Counter skipped;
+    private final Counter rejected;
+
+    public CredentialHashingService(PasswordEncoder passwordEncoder,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${askknightro.credentials.hashing.max-concurrent:2}") int maxConcurrent,
+                                    @Value("${askknightro.credentials.hashing.acquire-timeout:2s}") Duration acquireTimeout,
+                                    @Value("${askknightro.credentials.skip-cognito-managed:true}") boolean skipCognitoManaged) {
+        this.passwordEncoder = passwordEncoder;
+        this.skipCognitoManaged = skipCognitoManaged;
+        // fair, so a waiting signup isn't overtaken by later ones until it times out
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeout = acquireTimeout;
+
+        // hash = BCrypt alone; wait = time spent waiting for a permit
+        this.hashTimer = Timer.builder("askknightro.credentials.hash").register(meterRegistry);
+        this.waitTimer = Timer.builder("askknightro.credentials.hash.wait").register(meterRegistry);
+        this.skipped = Counter.builder("askknightro.credentials.hash.skipped").register(meterRegistry);
+        this.rejected = Counter.builder("askknightro.credentials.hash.rejected").register(meterRegistry);
+        Gauge.builder("askknightro.credentials.hash.waiting", permits, Semaphore::getQueueLength)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hash of a locally managed password, or null for a blank one. Hashes on the calling thread once a
+     * permit is free; throws TaskRejectedException when none frees up within acquire-timeout.
+     */
+    public String hash(String rawPassword) {
+        if (rawPassword == null || rawPassword.isBlank()) return null;
+
+        acquire();
+        try {
+            return hashTimer.record(() -> passwordEncoder.encode(rawPassword));
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Hash for an account whose password Cognito owns: null (nothing stored) unless local hashing is kept on. */
+    public String hashCognitoManaged(String rawPassword) {
+        if (!skipCognitoManaged) return hash(rawPassword);
+        if (rawPassword != null && !rawPassword.isBlank()) skipped.increment();
+        return null;
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Interrupted waiting to hash a password", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new TaskRejectedException("No password hashing permit within " + acquireTimeout);
+        }
+    }
+}
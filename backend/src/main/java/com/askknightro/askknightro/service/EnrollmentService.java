@@ -1,9 +1,10 @@
 package com.askknightro.askknightro.service;
 
+import com.askknightro.askknightro.auth.UserRole;
+import com.askknightro.askknightro.dto.CourseDto;
 import com.askknightro.askknightro.dto.EnrollmentDto;
 import com.askknightro.askknightro.dto.EnrollmentReqDto;
 import com.askknightro.askknightro.dto.StudentDto;
-import com.askknightro.askknightro.entity.Course;
 import com.askknightro.askknightro.entity.Enrollment;
 import com.askknightro.askknightro.entity.Student;
 import com.askknightro.askknightro.repository.CourseManagementRepository;
@@ -12,11 +13,14 @@ import com.askknightro.askknightro.repository.StudentRepository;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
  // Service method for Student Management/Enrollments
 @Service
@@ -28,20 +32,30 @@ public class EnrollmentService
     private final CourseManagementRepository courseManagementRepository;
     private final StudentService studentService;
     private final StudentRepository studentRepository;
+    private final CourseCatalog courseCatalog;
 
-    // Service method for retrieving a list of Students of a given Course
+    // Roster columns clients may sort by
+    private static final Set<String> SORTABLE = Set.of(
+            "studentId", "name", "email", "yearStanding", "major", "gradDate", "schoolId", "universityCollege");
+
+    // Service method for retrieving a list of Students of a given Course (one query, by name)
     public List<StudentDto> readStudentList(int course_id)
     {
-        // Retrieve a list of enrollment rows by class_id
-        List<Enrollment> enrollments = enrollmentRepository.findAllByClassIdNative(course_id);
-
-        // Map each enrollment's student_id -> StudentDto using StudentService
-        return enrollments.stream()
-                .map(e -> {
-                    Integer studentId = e.getStudent().getStudentId(); // If relations: e.getStudent().getStudentId()
-                    return studentService.readStudent(studentId);
-                })
-                .collect(Collectors.toList());
+        return enrollmentRepository.findStudentsByClassId(course_id, Sort.by("name", "studentId")).stream()
+                .map(EnrollmentService::toStudentDto)
+                .toList();
+    }
+
+    // Service method for retrieving one page of the Students of a given Course
+    public Page<StudentDto> readStudentPage(int course_id, Pageable pageable)
+    {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Cannot sort students by '" + order.getProperty() + "'");
+            }
+        }
+        return enrollmentRepository.findStudentsByClassId(course_id, pageable)
+                .map(EnrollmentService::toStudentDto);
     }
 
     // Service method for retrieving a singular Student from a given Course
@@ -69,13 +83,14 @@ public class EnrollmentService
 
         // Delete that enrollment row
         enrollmentRepository.delete(enrollment);
+        courseCatalog.evictUser(student_id, UserRole.STUDENT);
     }
 
     @Transactional
     public void addEnrollment(EnrollmentReqDto enrollmentDto) {
-        // 1) Course by code (404 if not found)
-        Course courseToEnroll = courseManagementRepository
-                .findOptionalByEnrollmentCode(enrollmentDto.getEnrollmentCode())
+        // 1) Course by code (404 if not found); usually a cache hit, the row itself is only referenced
+        Integer classId = courseCatalog.findByEnrollmentCode(enrollmentDto.getEnrollmentCode())
+                .map(CourseDto::getClassId)
                 .orElseThrow(() -> new EntityNotFoundException(
                         "No course found for enrollment code '" + enrollmentDto.getEnrollmentCode() + "'."));
 
@@ -86,7 +101,7 @@ public class EnrollmentService
 
         // 3) Already enrolled? (409)
         boolean already = enrollmentRepository.existsByClassIdAndStudentIdNative(
-                courseToEnroll.getClassId(), student.getStudentId());
+                classId, student.getStudentId());
 
         if (already) {
             throw new EntityExistsException("You are already enrolled in this course.");
@@ -95,9 +110,26 @@ public class EnrollmentService
         // 4) Save
         Enrollment enrollment = Enrollment.builder()
                 .student(student)
-                .courseClass(courseToEnroll)
+                .courseClass(courseManagementRepository.getReferenceById(classId))
                 .build();
 
         enrollmentRepository.save(enrollment);
+        courseCatalog.evictUser(student.getStudentId(), UserRole.STUDENT);
+    }
+
+    // Same fields StudentService.readStudent returns
+    private static StudentDto toStudentDto(EnrollmentRepository.EnrolledStudent s)
+    {
+        return StudentDto.builder()
+                .studentId(s.getStudentId())
+                .name(s.getName())
+                .email(s.getEmail())
+                .profilePicture(s.getProfilePicture())
+                .yearStanding(s.getYearStanding())
+                .major(s.getMajor())
+                .gradDate(s.getGradDate())
+                .schoolId(s.getSchoolId())
+                .universityCollege(s.getUniversityCollege())
+                .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.UnifiedSignupRequestDto.Role;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cognito sub -> local student/teacher id, so the profile lookup and login's provisioning check are
+ * memory reads after the first request. Only linked accounts are cached (a miss always goes to the
+ * database); entries are replaced when a signup is confirmed and dropped when the account is deleted,
+ * and the TTL bounds anything changed directly in the database.
+ */
+@Service
+public class IdentityCache {
+
+    private record Key(String sub, Role role) {}
+
+    private final Cache<Key, Integer> ids;
+
+    public IdentityCache(MeterRegistry meterRegistry,
+                         @Value("${askknightro.identity-cache.max-entries:50000}") long maxEntries,
+                         @Value("${askknightro.identity-cache.ttl:10m}") Duration ttl) {
+        this.ids = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, ids, "identities");
+    }
+
+    /** Local id for the sub in that role, loading (and caching) it on a miss. */
+    public Optional<Integer> resolve(String sub, Role role, Function<String, Optional<Integer>> loader) {
+        if (sub == null) return Optional.empty();
+        // Loaded outside the cache (not ids.get(key, loader)) so the query never runs inside a monitor
+        Key key = new Key(sub, role);
+        Integer id = ids.getIfPresent(key);
+        if (id != null) return Optional.of(id);
+        Optional<Integer> loaded = loader.apply(sub);
+        loaded.ifPresent(v -> ids.put(key, v));
+        return loaded;
+    }
+
+    public void put(String sub, Role role, Integer id) {
+        if (sub != null && id != null) ids.put(new Key(sub, role), id);
+    }
+
+    public void evict(String sub, Role role) {
+        if (sub != null) ids.invalidate(new Key(sub, role));
+    }
+}
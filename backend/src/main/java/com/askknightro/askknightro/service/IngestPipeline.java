@@ -0,0 +1,281 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// Two-stage ingest: embed (Ollama) -> upsert (Milvus), so batch N+1 is embedding while batch N is inserting.
+// Each stage has its own pool, shared by all jobs, so total concurrency toward each backend is bounded.
+// Chunks are matched by content hash against the material_chunk manifest first: a chunk already stored
+// at the same index is skipped, and text already embedded elsewhere reuses that vector instead of Ollama.
+@Service
+@Slf4j
+public class IngestPipeline {
+
+    // Manifest rows tried per chunk when looking for a stored vector to copy
+    private static final int MAX_COPY_SOURCES = 3;
+
+    private final EmbeddingModel embeddingModel;
+    private final ChunkStore chunkStore;
+    private final MaterialChunkRepository chunkRepository;
+    private final RagMetrics metrics;
+    private final ThreadPoolTaskExecutor embedPool;
+    private final ThreadPoolTaskExecutor insertPool;
+    private final int maxInFlightBatches;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    public IngestPipeline(EmbeddingModel embeddingModel,
+                          ChunkStore chunkStore,
+                          MaterialChunkRepository chunkRepository,
+                          RagMetrics metrics,
+                          @Value("${askknightro.ingest.embed-concurrency:2}") int embedConcurrency,
+                          @Value("${askknightro.ingest.insert-concurrency:2}") int insertConcurrency,
+                          @Value("${askknightro.ingest.max-in-flight-batches:4}") int maxInFlightBatches,
+                          @Value("${askknightro.ingest.retry.max-attempts:4}") int maxAttempts,
+                          @Value("${askknightro.ingest.retry.initial-backoff:500ms}") Duration initialBackoff,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.embeddingModel = embeddingModel;
+        this.chunkStore = chunkStore;
+        this.chunkRepository = chunkRepository;
+        this.metrics = metrics;
+        this.embedPool = pool("ingest-embed-", embedConcurrency, virtualThreads);
+        this.insertPool = pool("ingest-insert-", insertConcurrency, virtualThreads);
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        embedPool.shutdown();
+        insertPool.shutdown();
+    }
+
+    /** How each chunk of a run was handled. */
+    public record Stats(int unchanged, int reused, int embedded) {}
+
+    /** A batch after hash matching: only the chunks that need writing, each with its vector. */
+    private record Resolved(List<Document> docs, List<float[]> vectors, List<Document> batch) {}
+
+    /**
+     * Embeds and writes every batch. {@code onProgress} receives the number of batches written
+     * contiguously from the start (safe to checkpoint on), which can lag behind out-of-order completions.
+     * {@code cancelled} is asked before each batch is read and again before it is written; once it says
+     * true nothing more is written and a CancellationException is thrown after the in-flight batches end.
+     * Chunks must carry classId, material_id, chunk_index and content_hash metadata (see StreamingTextChunker).
+     */
+    public Stats run(Iterator<List<Document>> batches, BooleanSupplier cancelled, IntConsumer onProgress) {
+        // Backpressure: the producer blocks once this many batches are between "embedding" and "written"
+        Semaphore inFlight = new Semaphore(maxInFlightBatches);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Progress progress = new Progress(onProgress);
+        Counts counts = new Counts();
+
+        int submitted = 0;
+        while (batches.hasNext() && failure.get() == null) {
+            if (cancelled.getAsBoolean()) {
+                failure.compareAndSet(null, new CancellationException("Ingestion cancelled"));
+                break;
+            }
+            List<Document> batch = batches.next();
+            int seq = submitted++;
+            inFlight.acquireUninterruptibly();
+            // A batch may have failed while this one waited for room; don't start more work after it
+            if (failure.get() != null) {
+                inFlight.release();
+                break;
+            }
+
+            CompletableFuture
+                    .supplyAsync(() -> resolve(batch, counts), embedPool)
+                    .thenAcceptAsync(resolved -> {
+                        if (cancelled.getAsBoolean()) throw new CancellationException("Ingestion cancelled");
+                        metrics.timeIngest("insert", classIdOf(batch), () -> withRetry("insert", () -> {
+                            chunkStore.upsert(resolved.docs(), resolved.vectors());
+                            // Manifest after the vectors: a recorded hash always means Milvus has that chunk
+                            chunkRepository.saveAll(resolved.batch().stream().map(IngestPipeline::manifestRow).toList());
+                            return null;
+                        }));
+                    }, insertPool)
+                    .whenComplete((ok, err) -> {
+                        if (err != null) failure.compareAndSet(null, unwrap(err));
+                        else progress.completed(seq);
+                        inFlight.release();
+                    });
+        }
+
+        // Drain: wait for everything still in flight
+        inFlight.acquireUninterruptibly(maxInFlightBatches);
+        inFlight.release(maxInFlightBatches);
+
+        Throwable err = failure.get();
+        if (err instanceof CancellationException c) throw c;
+        if (err != null) throw new RuntimeException("Ingest pipeline failed", err);
+        return new Stats(counts.unchanged.get(), counts.reused.get(), counts.embedded.get());
+    }
+
+    // Stage 1: decide per chunk whether to skip it, copy an existing vector, or embed it
+    private Resolved resolve(List<Document> batch, Counts counts) {
+        Set<String> hashes = batch.stream().map(IngestPipeline::hashOf).collect(Collectors.toSet());
+        Integer classId = classIdOf(batch);
+        Map<String, List<MaterialChunk>> known = metrics.timeIngest("lookup", classId,
+                        () -> withRetry("lookup", () -> chunkRepository.findByContentHashIn(hashes)))
+                .stream().collect(Collectors.groupingBy(MaterialChunk::getContentHash));
+
+        List<Document> toWrite = new ArrayList<>(batch.size());
+        Map<String, List<String>> copyFrom = new HashMap<>();   // target doc id -> candidate source doc ids
+        for (Document d : batch) {
+            List<MaterialChunk> same = known.getOrDefault(hashOf(d), List.of());
+            String ownId = d.getId();
+            if (same.stream().anyMatch(c -> c.docId().equals(ownId))) {
+                // Same text already stored at this index (metadata such as name is left as it was)
+                counts.unchanged.incrementAndGet();
+                continue;
+            }
+            toWrite.add(d);
+            if (!same.isEmpty()) {
+                copyFrom.put(ownId, same.stream().limit(MAX_COPY_SOURCES).map(MaterialChunk::docId).toList());
+            }
+        }
+
+        Map<String, ChunkStore.StoredVector> stored = copyFrom.isEmpty() ? Map.of()
+                : metrics.timeIngest("fetch", classId, () -> withRetry("fetch", () -> chunkStore.fetchVectors(
+                        copyFrom.values().stream().flatMap(List::stream).collect(Collectors.toSet()))));
+
+        // A source is only trusted if the row still holds this text: chunk ids are positional, so a
+        // REPLACE batch (possibly of this same job) may have rewritten it with other text since the lookup
+        Map<String, float[]> copied = new HashMap<>();
+        for (Document d : toWrite) {
+            for (String source : copyFrom.getOrDefault(d.getId(), List.of())) {
+                ChunkStore.StoredVector v = stored.get(source);
+                if (v != null && hashOf(d).equals(v.contentHash())) {
+                    copied.put(d.getId(), v.vector());
+                    break;
+                }
+            }
+        }
+
+        // Anything without a matching stored vector (source deleted or rewritten since) gets embedded
+        List<Document> toEmbed = toWrite.stream().filter(d -> !copied.containsKey(d.getId())).toList();
+        List<float[]> embedded = toEmbed.isEmpty() ? List.of()
+                : metrics.timeIngest("embed", classId, () -> withRetry("embed", () -> embeddingModel.embed(toEmbed.stream().map(Document::getText).toList())));
+
+        Iterator<float[]> fresh = embedded.iterator();
+        List<float[]> vectors = new ArrayList<>(toWrite.size());
+        for (Document d : toWrite) {
+            float[] v = copied.get(d.getId());
+            vectors.add(v != null ? v : fresh.next());
+        }
+
+        counts.embedded.addAndGet(toEmbed.size());
+        counts.reused.addAndGet(toWrite.size() - toEmbed.size());
+        metrics.countIngestChunks(classId, "unchanged", batch.size() - toWrite.size());
+        metrics.countIngestChunks(classId, "reused", toWrite.size() - toEmbed.size());
+        metrics.countIngestChunks(classId, "embedded", toEmbed.size());
+        return new Resolved(toWrite, vectors, batch);
+    }
+
+    private static Integer classIdOf(List<Document> batch) {
+        return batch.isEmpty() ? null : ((Number) batch.get(0).getMetadata().get("classId")).intValue();
+    }
+
+    private static String hashOf(Document d) {
+        return (String) d.getMetadata().get("content_hash");
+    }
+
+    private static MaterialChunk manifestRow(Document d) {
+        return MaterialChunk.builder()
+                .materialId(((Number) d.getMetadata().get("material_id")).intValue())
+                .chunkIndex(((Number) d.getMetadata().get("chunk_index")).intValue())
+                .contentHash(hashOf(d))
+                .classId(((Number) d.getMetadata().get("classId")).intValue())
+                .content(d.getText())
+                .build();
+    }
+
+    private <T> T withRetry(String stage, Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) throw e;
+                // Exponential backoff with full jitter so parallel batches don't retry in lockstep
+                long cap = initialBackoff.toMillis() << (attempt - 1);
+                long sleep = ThreadLocalRandom.current().nextLong(cap + 1);
+                log.warn("Ingest {} attempt {}/{} failed, retrying in {} ms: {}", stage, attempt, maxAttempts, sleep, e.getMessage());
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+    }
+
+    private static ThreadPoolTaskExecutor pool(String prefix, int size, boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix(prefix);
+        executor.setVirtualThreads(virtualThreads);
+        executor.initialize();
+        return executor;
+    }
+
+    private static final class Counts {
+        final AtomicInteger unchanged = new AtomicInteger();
+        final AtomicInteger reused = new AtomicInteger();
+        final AtomicInteger embedded = new AtomicInteger();
+    }
+
+    // Tracks the contiguous prefix of finished batches
+    private static final class Progress {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final BitSet done = new BitSet();
+        private final IntConsumer onProgress;
+        private int contiguous;
+
+        Progress(IntConsumer onProgress) { this.onProgress = onProgress; }
+
+        void completed(int seq) {
+            lock.lock();
+            try {
+                done.set(seq);
+                int next = done.nextClearBit(contiguous);
+                if (next != contiguous) {
+                    contiguous = next;
+                    onProgress.accept(contiguous);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.IngestionJobDto;
+import com.askknightro.askknightro.entity.CourseMaterial;
+import com.askknightro.askknightro.entity.IngestionJob;
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.repository.CourseMaterialRepository;
+import com.askknightro.askknightro.repository.IngestionJobRepository;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import com.askknightro.askknightro.util.StreamingTextChunker;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+// Runs material ingestion (split -> embed -> insert) as durable background jobs.
+// The upload is staged to the spool dir and the job row records progress, so a restart resumes it.
+// A worker claims its job row atomically, and at most one job per material runs at a time (a newer
+// upload supersedes older jobs, which stop before their next write). The spool dir is local, so one
+// process owns the jobs staged in it.
+@Service
+@Slf4j
+public class IngestionJobService {
+
+    private static final int BATCH = 32;
+    private static final int NO_JOB = 0;   // job ids start at 1
+
+    private final IngestionJobRepository jobRepository;
+    private final MaterialChunkRepository chunkRepository;
+    private final TokenTextSplitter splitter;
+    private final ChunkStore chunkStore;
+    private final IngestPipeline pipeline;
+    private final CourseMaterialRepository materialRepository;
+    private final SemanticAnswerCache answerCache;
+    private final RagMetrics metrics;
+    private final Path spoolDir;
+    private final int windowChars;
+    private final ThreadPoolTaskExecutor workers;
+    // Claims made by this process; a RUNNING row with another id was left behind by a stopped one
+    private final String workerId = UUID.randomUUID().toString();
+
+    public IngestionJobService(IngestionJobRepository jobRepository,
+                               MaterialChunkRepository chunkRepository,
+                               TokenTextSplitter splitter,
+                               ChunkStore chunkStore,
+                               IngestPipeline pipeline,
+                               CourseMaterialRepository materialRepository,
+                               SemanticAnswerCache answerCache,
+                               RagMetrics metrics,
+                               @Value("${askknightro.ingest.spool-dir:${INGEST_SPOOL_DIR:${java.io.tmpdir}/askknightro-ingest}}") String spoolDir,
+                               @Value("${askknightro.ingest.workers:2}") int workerCount,
+                               @Value("${askknightro.ingest.queue-capacity:100}") int queueCapacity,
+                               @Value("${askknightro.ingest.window-chars:65536}") int windowChars,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) throws IOException {
+        this.jobRepository = jobRepository;
+        this.chunkRepository = chunkRepository;
+        this.splitter = splitter;
+        this.chunkStore = chunkStore;
+        this.pipeline = pipeline;
+        this.materialRepository = materialRepository;
+        this.answerCache = answerCache;
+        this.metrics = metrics;
+        this.spoolDir = Files.createDirectories(Path.of(spoolDir));
+        this.windowChars = windowChars;
+
+        // Kept private rather than a bean: an Executor bean would make Boot back off its applicationTaskExecutor
+        this.workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(workerCount);
+        workers.setMaxPoolSize(workerCount);
+        workers.setQueueCapacity(queueCapacity);
+        workers.setThreadNamePrefix("ingest-");
+        workers.setVirtualThreads(virtualThreads);
+        workers.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Unfinished jobs stay QUEUED/RUNNING in the DB and are resumed on the next startup
+        workers.shutdown();
+    }
+
+    // ---------- SUBMIT ----------
+    public IngestionJobDto submit(CourseMaterial material, MultipartFile file, String displayName, IngestionJob.Kind kind) {
+        Path staged = stage(file);
+
+        LocalDateTime now = LocalDateTime.now();
+        IngestionJob job = jobRepository.save(IngestionJob.builder()
+                .materialId(material.getId())
+                .classId(material.getCourseClass().getClassId())
+                .kind(kind)
+                .status(IngestionJob.Status.QUEUED)
+                .filePath(staged.toString())
+                .fileName(file.getOriginalFilename() == null ? "" : file.getOriginalFilename())
+                .displayName(displayName)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        // One job per material: older unfinished ones stop, and this one waits until a running one has
+        jobRepository.requestCancel(material.getId(), job.getJobId(), IngestionJob.CancelReason.SUPERSEDED);
+
+        // Inside a transaction (e.g. updateMaterial) the worker must not look for the row before commit
+        Integer jobId = job.getJobId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { dispatch(jobId); }
+            });
+        } else {
+            dispatch(jobId);
+        }
+        return toDto(job);
+    }
+
+    // ---------- READ ----------
+    public IngestionJobDto getJob(Integer jobId) {
+        return jobRepository.findById(jobId)
+                .map(this::toDto)
+                .orElseThrow(() -> new EntityNotFoundException("Ingestion job " + jobId + " not found."));
+    }
+
+    // ---------- CANCEL ----------
+    /**
+     * Stops the material's unfinished jobs before it is deleted. Committed in its own transaction, so
+     * a running job sees it before the caller removes any vectors; a job stopped this way deletes the
+     * material's vectors again after its last write.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void cancelForMaterial(Integer materialId) {
+        jobRepository.requestCancel(materialId, NO_JOB, IngestionJob.CancelReason.DELETED);
+        // Queued jobs stop before opening their file, so it can go now (a hard delete cascades their rows)
+        jobRepository.findByMaterialIdAndStatus(materialId, IngestionJob.Status.QUEUED)
+                .forEach(j -> deleteStaged(j.getFilePath()));
+    }
+
+    // Same as cancelForMaterial, for every material of a class being deleted
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void cancelForClass(Integer classId) {
+        jobRepository.requestCancelForClass(classId, IngestionJob.CancelReason.DELETED);
+        jobRepository.findByClassIdAndStatus(classId, IngestionJob.Status.QUEUED)
+                .forEach(j -> deleteStaged(j.getFilePath()));
+    }
+
+    // ---------- RESUME ----------
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<IngestionJob> pending = jobRepository.findByStatusInOrderByJobIdAsc(
+                List.of(IngestionJob.Status.QUEUED, IngestionJob.Status.RUNNING));
+        if (!pending.isEmpty()) log.info("Resuming {} unfinished ingestion job(s)", pending.size());
+        // Dispatched, not run: each is claimed by the worker, so one already picked up is skipped
+        pending.forEach(j -> dispatch(j.getJobId()));
+    }
+
+    // -------- Worker --------
+    private void dispatch(Integer jobId) {
+        try {
+            workers.execute(() -> run(jobId));
+        } catch (TaskRejectedException e) {
+            log.warn("Ingestion queue full, rejecting job {}", jobId);
+            jobRepository.findById(jobId).ifPresent(j -> finish(j, IngestionJob.Status.FAILED, "Ingestion queue is full, please retry later"));
+        }
+    }
+
+    private void run(Integer jobId) {
+        // Claimed at most once (submit and startup resume may both dispatch it); while another job of the
+        // material runs it stays QUEUED and is dispatched again when that one ends
+        if (!claim(jobId)) return;
+        IngestionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) return;
+
+        // Asked before anything is written: false once the job is cancelled or its row is gone
+        BooleanSupplier cancelled = () -> !jobRepository.isClaimed(jobId, workerId);
+        try {
+            if (cancelled.getAsBoolean()) throw new CancellationException("Ingestion job cancelled");
+
+            int done = job.getChunksDone();
+            if (done == 0 && job.getKind() == IngestionJob.Kind.REPLACE && !chunkRepository.existsByMaterialId(job.getMaterialId())) {
+                // Ingested before the chunk manifest existed: old chunk ids are unknown, so start clean.
+                // Otherwise the pipeline diffs against the manifest and only rewrites changed chunks.
+                Integer classId = job.getClassId(), materialId = job.getMaterialId();
+                metrics.runIngest("delete", classId, () -> chunkStore.deleteMaterial(classId, materialId));
+            }
+
+            // Stream the staged file through the chunker; only one window + in-flight batches are in memory
+            IngestionJob running = job;
+            try (StreamingTextChunker chunker = openChunker(job)) {
+                // Resuming: re-split (cheap) but skip chunks that were already written
+                for (int skipped = 0; skipped < done && chunker.hasNext(); skipped++) chunker.next();
+
+                AtomicInteger produced = new AtomicInteger(done);
+                Iterator<List<Document>> batches = new Iterator<>() {
+                    @Override public boolean hasNext() { return chunker.hasNext(); }
+                    @Override public List<Document> next() {
+                        // The chunker reads and splits lazily, so this is where split time is spent
+                        List<Document> batch = metrics.timeIngest("split", running.getClassId(), () -> {
+                            List<Document> b = new ArrayList<>(BATCH);
+                            while (b.size() < BATCH && chunker.hasNext()) b.add(chunker.next());
+                            return b;
+                        });
+                        produced.addAndGet(batch.size());
+                        return batch;
+                    }
+                };
+
+                IngestPipeline.Stats stats = pipeline.run(batches, cancelled, batchesWritten -> {
+                    running.setChunksDone(Math.min(produced.get(), done + batchesWritten * BATCH));
+                    jobRepository.updateProgress(jobId, running.getChunksDone());
+                });
+
+                // Total is only known once the whole file has been read
+                int total = produced.get();
+                job.setChunksTotal(total);
+                job.setChunksDone(total);
+
+                // The new file may be shorter: drop chunks past its end
+                if (cancelled.getAsBoolean()) throw new CancellationException("Ingestion job cancelled");
+                int removed = metrics.timeIngest("delete", job.getClassId(), () -> trimChunks(running.getMaterialId(), total));
+                log.info("Ingestion job {}: {} chunks ({} unchanged, {} reused, {} embedded, {} removed)",
+                        jobId, total, stats.unchanged(), stats.reused(), stats.embedded(), removed);
+            }
+
+            finish(job, IngestionJob.Status.COMPLETED, null);
+        } catch (CancellationException e) {
+            log.info("Ingestion job {} stopped: {}", jobId, e.getMessage());
+            finish(job, IngestionJob.Status.CANCELLED, null);
+        } catch (Exception e) {
+            log.error("Ingestion job {} failed", jobId, e);
+            finish(job, IngestionJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private boolean claim(Integer jobId) {
+        try {
+            return jobRepository.claim(jobId, workerId) == 1;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Ingestion job {} waits for the running job of its material", jobId);
+            return false;
+        }
+    }
+
+    private StreamingTextChunker openChunker(IngestionJob job) throws IOException {
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("classId", job.getClassId());
+        meta.put("name", (job.getDisplayName() != null && !job.getDisplayName().isBlank()) ? job.getDisplayName() : job.getFileName());
+        meta.put("fileName", job.getFileName() == null ? "" : job.getFileName());
+        meta.put("material_id", job.getMaterialId());
+
+        // Lenient decoding, same as the old new String(bytes, UTF_8): bad bytes become U+FFFD instead of failing
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        Reader reader = new InputStreamReader(Files.newInputStream(Path.of(job.getFilePath())), decoder);
+
+        // Stable ids + chunk_index so re-writing a chunk after a restart overwrites rather than duplicates
+        return new StreamingTextChunker(reader, splitter, meta, i -> MaterialChunk.docId(job.getMaterialId(), i), windowChars);
+    }
+
+    private void finish(IngestionJob job, IngestionJob.Status status, String error) {
+        IngestionJob.CancelReason reason = null;
+        if (status == IngestionJob.Status.CANCELLED) {
+            // A hard delete cascades the row away: that counts as the material being deleted
+            reason = jobRepository.findById(job.getJobId())
+                    .map(IngestionJob::getCancelReason)
+                    .orElse(IngestionJob.CancelReason.DELETED);
+            error = reason == IngestionJob.CancelReason.SUPERSEDED ? "Superseded by a newer upload" : "Material was deleted";
+        }
+        try {
+            jobRepository.finish(job.getJobId(), status, error, job.getChunksDone(), job.getChunksTotal());
+        } catch (Exception e) {
+            log.warn("Could not record final state {} for ingestion job {}", status, job.getJobId(), e);
+        }
+
+        deleteStaged(job.getFilePath());
+        // Vectors written between the deletion's cleanup and this job noticing it would make the
+        // deleted material searchable again: remove them now that nothing more is written
+        if (reason == IngestionJob.CancelReason.DELETED) purgeMaterial(job);
+        answerCache.invalidateClass(job.getClassId());
+
+        // A job that waited on this one can be claimed now
+        jobRepository.findFirstByMaterialIdAndStatusOrderByJobIdAsc(job.getMaterialId(), IngestionJob.Status.QUEUED)
+                .ifPresent(next -> dispatch(next.getJobId()));
+    }
+
+    private void purgeMaterial(IngestionJob job) {
+        if (materialRepository.findByIdAndIsDeletedFalse(job.getMaterialId()).isPresent()) return;
+        try {
+            Integer classId = job.getClassId(), materialId = job.getMaterialId();
+            metrics.runIngest("delete", classId, () -> chunkStore.deleteMaterial(classId, materialId));
+            chunkRepository.deleteByMaterialId(materialId);
+        } catch (Exception e) {
+            log.warn("Could not remove chunks of deleted material {} after job {}", job.getMaterialId(), job.getJobId(), e);
+        }
+    }
+
+    // -------- Helpers --------
+    private Path stage(MultipartFile file) {
+        try {
+            Path target = spoolDir.resolve(UUID.randomUUID() + ".upload");
+            file.transferTo(target);
+            return target;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to stage uploaded material", e);
+        }
+    }
+
+    private void deleteStaged(String filePath) {
+        if (filePath == null) return;
+        try {
+            Files.deleteIfExists(Path.of(filePath));
+        } catch (IOException e) {
+            log.warn("Could not remove staged upload {}", filePath, e);
+        }
+    }
+
+    private int trimChunks(Integer materialId, int fromIndex) {
+        List<String> ids = chunkRepository.findByMaterialIdAndChunkIndexGreaterThanEqual(materialId, fromIndex)
+                .stream().map(MaterialChunk::docId).toList();
+        if (ids.isEmpty()) return 0;
+        chunkStore.delete(ids);
+        chunkRepository.deleteTail(materialId, fromIndex);
+        return ids.size();
+    }
+
+    private IngestionJobDto toDto(IngestionJob j) {
+        return IngestionJobDto.builder()
+                .jobId(j.getJobId())
+                .materialId(j.getMaterialId())
+                .classId(j.getClassId())
+                .kind(j.getKind().name())
+                .status(j.getStatus().name())
+                .chunksDone(j.getChunksDone())
+                .chunksTotal(j.getChunksTotal())
+                .error(j.getError())
+                .createdAt(j.getCreatedAt())
+                .updatedAt(j.getUpdatedAt())
+                .build();
+    }
+}
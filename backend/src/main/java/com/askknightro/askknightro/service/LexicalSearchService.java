@@ -0,0 +1,104 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Postgres full-text search over ingested chunks, run alongside the Milvus search in AskService.
+// Catches exact terms (course codes, names, assignment numbers) that MiniLM embeddings blur.
+@Service
+@Slf4j
+public class LexicalSearchService {
+
+    private final MaterialChunkRepository chunkRepository;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+    private final Duration timeout;
+    private final ThreadPoolTaskExecutor pool;
+
+    public LexicalSearchService(MaterialChunkRepository chunkRepository,
+                                RagMetrics metrics,
+                                @Value("${askknightro.retrieval.lexical.enabled:true}") boolean enabled,
+                                @Value("${askknightro.retrieval.lexical.concurrency:4}") int concurrency,
+                                @Value("${askknightro.retrieval.lexical.queue-capacity:32}") int queueCapacity,
+                                @Value("${askknightro.retrieval.lexical.timeout:1500ms}") Duration timeout,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.chunkRepository = chunkRepository;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.timeout = timeout;
+
+        // Bounded: past this many waiting searches, new questions go dense-only instead of queueing
+        this.pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(concurrency);
+        pool.setMaxPoolSize(concurrency);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setThreadNamePrefix("lexical-");
+        pool.setVirtualThreads(virtualThreads);
+        pool.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Best lexical matches for the question within a class, as Documents shaped like the vector hits
+     * (same id scheme and metadata keys) so the two lists can be fused. Never fails or waits past the
+     * timeout: on error, a full queue or a slow query the result is empty and the answer falls back
+     * to vector results.
+     */
+    public CompletableFuture<List<Document>> searchAsync(Integer classId, String question, int limit) {
+        if (!enabled) return CompletableFuture.completedFuture(List.of());
+
+        CompletableFuture<List<Document>> result = new CompletableFuture<>();
+        try {
+            pool.execute(() -> {
+                if (result.isDone()) return;   // timed out while queued: nobody is waiting for it any more
+                try {
+                    result.complete(metrics.timeAsk("lexical_search", classId, () -> search(classId, question, limit)));
+                } catch (RuntimeException e) {
+                    log.warn("Lexical search failed for classId={}: {}", classId, e.getMessage());
+                    result.complete(List.of());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Lexical search queue full, classId={} uses vector results only", classId);
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return result.completeOnTimeout(List.of(), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private List<Document> search(Integer classId, String question, int limit) {
+        return chunkRepository.searchLexical(classId, question, limit).stream()
+                .map(h -> {
+                    Map<String, Object> meta = new HashMap<>();
+                    meta.put("classId", classId);
+                    meta.put("material_id", h.getMaterialId());
+                    meta.put("chunk_index", h.getChunkIndex());
+                    meta.put("name", h.getName() == null ? "" : h.getName());
+                    meta.put("fileName", "");
+                    meta.put("lexical_rank", h.getRank());
+                    return Document.builder()
+                            .id(MaterialChunk.docId(h.getMaterialId(), h.getChunkIndex()))
+                            .text(h.getContent())
+                            .metadata(meta)
+                            .build();
+                })
+                .toList();
+    }
+}
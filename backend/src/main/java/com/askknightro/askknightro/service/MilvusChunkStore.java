@@ -0,0 +1,343 @@
+package com.askknightro.askknightro.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.QueryResults;
+import io.milvus.grpc.SearchResults;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.dml.DeleteParam;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.param.partition.CreatePartitionParam;
+import io.milvus.param.partition.DropPartitionParam;
+import io.milvus.param.partition.HasPartitionParam;
+import io.milvus.param.partition.LoadPartitionsParam;
+import io.milvus.param.partition.ReleasePartitionsParam;
+import io.milvus.response.QueryResultsWrapper;
+import io.milvus.response.SearchResultsWrapper;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Reads/writes chunks straight against Milvus. VectorStore.add() always embeds itself, which is
+// what forced embedding and insert to run back to back; this lets the two stages overlap and
+// lets ingest copy an existing vector instead of embedding the same text again.
+// Each class lives in its own partition ("class_<id>"), so searches and deletes only touch that class.
+@Service
+@Profile("!loadtest")
+public class MilvusChunkStore implements ChunkStore {
+
+    private static final Gson GSON = new Gson();
+    private static final String DEFAULT_PARTITION = "_default";
+
+    private final MilvusServiceClient milvusClient;
+    private final VectorIndexService vectorIndexService;
+    private final String databaseName;
+    private final String collectionName;
+    private final String idField;
+    private final String contentField;
+    private final String metadataField;
+    private final String embeddingField;
+    private final Set<String> knownPartitions = ConcurrentHashMap.newKeySet();
+
+    public MilvusChunkStore(MilvusServiceClient milvusClient,
+                            VectorIndexService vectorIndexService,
+                            @Value("${spring.ai.vectorstore.milvus.database-name:default}") String databaseName,
+                            @Value("${spring.ai.vectorstore.milvus.collection-name:vector_store}") String collectionName,
+                            @Value("${spring.ai.vectorstore.milvus.id-field-name:doc_id}") String idField,
+                            @Value("${spring.ai.vectorstore.milvus.text-field-name:content}") String contentField,
+                            @Value("${spring.ai.vectorstore.milvus.metadata-field-name:metadata}") String metadataField,
+                            @Value("${spring.ai.vectorstore.milvus.vector-field-name:embedding}") String embeddingField) {
+        this.milvusClient = milvusClient;
+        this.vectorIndexService = vectorIndexService;
+        this.databaseName = databaseName;
+        this.collectionName = collectionName;
+        this.idField = idField;
+        this.contentField = contentField;
+        this.metadataField = metadataField;
+        this.embeddingField = embeddingField;
+    }
+
+    // Upsert (not insert) so a resumed or retried batch with the same chunk ids doesn't duplicate rows.
+    // Each chunk goes to its class's partition (metadata classId).
+    @Override
+    public void upsert(List<Document> docs, List<float[]> vectors) {
+        if (docs.size() != vectors.size()) {
+            throw new IllegalArgumentException("Got " + vectors.size() + " embeddings for " + docs.size() + " chunks");
+        }
+        if (docs.isEmpty()) return;
+
+        Map<Integer, Rows> byClass = new LinkedHashMap<>();
+        for (int i = 0; i < docs.size(); i++) {
+            Document d = docs.get(i);
+            Integer classId = ((Number) d.getMetadata().get("classId")).intValue();
+            byClass.computeIfAbsent(classId, c -> new Rows())
+                    .add(d.getId(), d.getText(), GSON.toJsonTree(d.getMetadata()).getAsJsonObject(), toList(vectors.get(i)));
+        }
+        byClass.forEach((classId, rows) -> write(partitionFor(classId), rows));
+    }
+
+    /**
+     * Dense search inside one class's partition, so cost scales with that class rather than the whole
+     * collection. Search params follow the index actually built (see VectorIndexService).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Document> search(Integer classId, float[] query, int topK, double minScore) {
+        String partition = partitionName(classId);
+        if (!knownPartitions.contains(partition) && !hasPartition(partition)) return List.of();
+
+        SearchParam param = SearchParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionNames(List.of(partition))
+                .withMetricType(MetricType.COSINE)
+                .withVectorFieldName(embeddingField)
+                .withFloatVectors(List.of(toList(query)))
+                .withTopK(topK)
+                .withParams(vectorIndexService.searchParams(topK))
+                .withOutFields(List.of(contentField, metadataField, embeddingField))
+                .withConsistencyLevel(ConsistencyLevelEnum.BOUNDED)
+                .build();
+
+        R<SearchResults> result = milvusClient.search(param);
+        check(result, "search");
+
+        List<Document> hits = new ArrayList<>();
+        for (SearchResultsWrapper.IDScore s : new SearchResultsWrapper(result.getData().getResults()).getIDScore(0)) {
+            if (s.getScore() < minScore) continue;
+            Map<String, Object> meta = GSON.fromJson(toJson(s.get(metadataField)), Map.class);
+            meta.put("distance", 1.0 - s.getScore());
+            meta.put(VECTOR, toArray((List<Float>) s.get(embeddingField)));
+            hits.add(Document.builder()
+                    .id(s.getStrID())
+                    .text(String.valueOf(s.get(contentField)))
+                    .metadata(meta)
+                    .score((double) s.getScore())
+                    .build());
+        }
+        return hits;
+    }
+
+    // Stored vectors for the given chunk ids; ids not (yet) visible in Milvus are simply absent
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, StoredVector> fetchVectors(Collection<String> ids) {
+        if (ids.isEmpty()) return Map.of();
+
+        // The metadata comes back from the same row as the vector, so its content_hash says which text
+        // the vector belongs to even if the row was rewritten since the caller looked it up
+        QueryParam param = QueryParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withExpr(idIn(ids))
+                .withOutFields(List.of(idField, metadataField, embeddingField))
+                .build();
+
+        R<QueryResults> result = milvusClient.query(param);
+        check(result, "query");
+
+        Map<String, StoredVector> out = new HashMap<>();
+        for (QueryResultsWrapper.RowRecord row : new QueryResultsWrapper(result.getData()).getRowRecords()) {
+            JsonObject meta = JsonParser.parseString(toJson(row.get(metadataField))).getAsJsonObject();
+            String hash = meta.has("content_hash") ? meta.get("content_hash").getAsString() : null;
+            out.put(String.valueOf(row.get(idField)), new StoredVector(toArray((List<Float>) row.get(embeddingField)), hash));
+        }
+        return out;
+    }
+
+    @Override
+    public void delete(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        delete(null, idIn(ids));
+    }
+
+    @Override
+    public void deleteMaterial(Integer classId, Integer materialId) {
+        String partition = partitionName(classId);
+        if (!knownPartitions.contains(partition) && !hasPartition(partition)) return;
+        delete(partition, metadataField + "[\"material_id\"] == " + materialId);
+    }
+
+    // A whole class is one partition, so dropping it replaces a filtered delete over the collection
+    @Override
+    public void dropClass(Integer classId) {
+        String partition = partitionName(classId);
+        if (!hasPartition(partition)) return;
+
+        vectorIndexService.write(new VectorIndexService.Change.PartitionDropped(partition), () -> {
+            check(milvusClient.releasePartitions(ReleasePartitionsParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collectionName)
+                    .withPartitionNames(List.of(partition))
+                    .build()), "release partition");
+            check(milvusClient.dropPartition(DropPartitionParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collectionName)
+                    .withPartitionName(partition)
+                    .build()), "drop partition");
+        });
+        knownPartitions.remove(partition);
+    }
+
+    /**
+     * Moves up to {@code limit} chunks that still live in the default partition (written before
+     * per-class partitions) into their class partition. Returns how many were moved; 0 means done.
+     */
+    public int migrateFromDefaultPartition(int limit) {
+        QueryParam param = QueryParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionNames(List.of(DEFAULT_PARTITION))
+                .withExpr(metadataField + "[\"classId\"] >= 0")
+                .withOutFields(List.of(idField, contentField, metadataField, embeddingField))
+                .withLimit((long) limit)
+                .withConsistencyLevel(ConsistencyLevelEnum.STRONG)   // must see the previous batch's deletes
+                .build();
+
+        R<QueryResults> result = milvusClient.query(param);
+        check(result, "query");
+
+        Map<Integer, Rows> byClass = new LinkedHashMap<>();
+        List<String> moved = new ArrayList<>();
+        for (QueryResultsWrapper.RowRecord row : new QueryResultsWrapper(result.getData()).getRowRecords()) {
+            JsonObject meta = JsonParser.parseString(toJson(row.get(metadataField))).getAsJsonObject();
+            String id = String.valueOf(row.get(idField));
+            @SuppressWarnings("unchecked")
+            List<Float> vector = (List<Float>) row.get(embeddingField);
+            // Metadata is copied as-is (no Map round trip, so ints stay ints for JSON filters)
+            byClass.computeIfAbsent(meta.get("classId").getAsInt(), c -> new Rows())
+                    .add(id, String.valueOf(row.get(contentField)), meta, vector);
+            moved.add(id);
+        }
+        if (moved.isEmpty()) return 0;
+
+        byClass.forEach((classId, rows) -> write(partitionFor(classId), rows));
+        delete(DEFAULT_PARTITION, idIn(moved));
+        return moved.size();
+    }
+
+    // Writes go through VectorIndexService so a rebuild in progress can carry them over to the new collection
+    private void write(String partition, Rows rows) {
+        vectorIndexService.write(new VectorIndexService.Change.Upserted(partition, List.copyOf(rows.ids)), () -> upsertRows(partition, rows));
+    }
+
+    private void upsertRows(String partition, Rows rows) {
+        UpsertParam param = UpsertParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionName(partition)
+                .withFields(List.of(
+                        new InsertParam.Field(idField, rows.ids),
+                        new InsertParam.Field(contentField, rows.contents),
+                        new InsertParam.Field(metadataField, rows.metadata),
+                        new InsertParam.Field(embeddingField, rows.embeddings)))
+                .build();
+        check(milvusClient.upsert(param), "upsert");
+    }
+
+    private void delete(String partition, String expr) {
+        DeleteParam.Builder param = DeleteParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withExpr(expr);
+        if (partition != null) param.withPartitionName(partition);
+        vectorIndexService.write(new VectorIndexService.Change.Deleted(partition, expr),
+                () -> check(milvusClient.delete(param.build()), "delete"));
+    }
+
+    // Creates (and loads) the class partition on first write
+    private String partitionFor(Integer classId) {
+        String partition = partitionName(classId);
+        if (knownPartitions.contains(partition) || hasPartition(partition)) return partition;
+
+        R<RpcStatus> created = milvusClient.createPartition(CreatePartitionParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionName(partition)
+                .build());
+        // Another writer may have just created it
+        if (created.getStatus() != R.Status.Success.getCode() && !hasPartition(partition)) check(created, "create partition");
+
+        check(milvusClient.loadPartitions(LoadPartitionsParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionNames(List.of(partition))
+                .build()), "load partition");
+        knownPartitions.add(partition);
+        return partition;
+    }
+
+    private boolean hasPartition(String partition) {
+        R<Boolean> result = milvusClient.hasPartition(HasPartitionParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withPartitionName(partition)
+                .build());
+        check(result, "has partition");
+        if (Boolean.TRUE.equals(result.getData())) {
+            knownPartitions.add(partition);
+            return true;
+        }
+        return false;
+    }
+
+    static String partitionName(Integer classId) {
+        return "class_" + classId;
+    }
+
+    private static void check(R<?> result, String op) {
+        if (result.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("Milvus " + op + " failed: " + result.getMessage(), result.getException());
+        }
+    }
+
+    // JSON fields come back as gson or fastjson objects depending on the SDK path; both print as JSON
+    private static String toJson(Object raw) {
+        return raw == null ? "{}" : raw.toString();
+    }
+
+    // Column-wise buffers for one partition's write
+    private static final class Rows {
+        final List<String> ids = new ArrayList<>();
+        final List<String> contents = new ArrayList<>();
+        final List<JsonObject> metadata = new ArrayList<>();
+        final List<List<Float>> embeddings = new ArrayList<>();
+
+        void add(String id, String content, JsonObject meta, List<Float> embedding) {
+            ids.add(id);
+            contents.add(content);
+            metadata.add(meta);
+            embeddings.add(embedding);
+        }
+    }
+
+    // Chunk ids are UUIDs we generate, so quoting them verbatim is safe
+    private String idIn(Collection<String> ids) {
+        return idField + " in [" + ids.stream().map(id -> "\"" + id + "\"").collect(Collectors.joining(",")) + "]";
+    }
+
+    private static float[] toArray(List<Float> v) {
+        float[] out = new float[v.size()];
+        for (int i = 0; i < out.length; i++) out[i] = v.get(i);
+        return out;
+    }
+
+    private static List<Float> toList(float[] v) {
+        List<Float> out = new ArrayList<>(v.length);
+        for (float f : v) out.add(f);
+        return out;
+    }
+}
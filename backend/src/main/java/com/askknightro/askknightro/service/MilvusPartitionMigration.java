@@ -0,0 +1,42 @@
+package com.askknightro.askknightro.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+// One-off move of chunks written before per-class partitions from "_default" into "class_<id>".
+// Idempotent: once the default partition is empty it finishes after a single query.
+@Service
+@Profile("!loadtest")
+@RequiredArgsConstructor
+@Slf4j
+public class MilvusPartitionMigration {
+
+    private final MilvusChunkStore chunkStore;
+
+    @Value("${askknightro.milvus.partition-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${askknightro.milvus.partition-migration.batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) return;
+        try {
+            int total = 0;
+            for (int moved; (moved = chunkStore.migrateFromDefaultPartition(batchSize)) > 0; ) {
+                total += moved;
+                log.info("Moved {} chunks into per-class partitions so far", total);
+            }
+            if (total > 0) log.info("Partition migration finished: {} chunks moved", total);
+        } catch (Exception e) {
+            // Unmigrated chunks are just not searchable yet; the next startup picks up where this stopped
+            log.error("Milvus partition migration failed", e);
+        }
+    }
+}
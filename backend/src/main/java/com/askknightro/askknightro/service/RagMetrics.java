@@ -0,0 +1,144 @@
+package com.askknightro.askknightro.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stage timers and size summaries for the ask and ingest paths. Every stage of a path shares one
+ * timer name ("askknightro.ask.stage" / "askknightro.ingest.stage") and is told apart by the "stage"
+ * tag, so one Prometheus query breaks a slow request down. The stage timers publish histogram buckets,
+ * so they carry no class tag: buckets x stages x classes would be too many series. Each stage is also
+ * recorded per class on "askknightro.ask.class.stage" / "askknightro.ingest.class.stage", which have no
+ * histogram (count, sum and max only). Counters and size summaries are tagged with the class too, but
+ * only the first max-class-tags classes seen get their own value; the rest share "other".
+ */
+@Component
+public class RagMetrics {
+
+    static final String OTHER_CLASSES = "other";
+    private static final String ASK = "ask";
+    private static final String INGEST = "ingest";
+
+    private final MeterRegistry registry;
+    private final int maxClassTags;
+    private final Set<Integer> taggedClasses = ConcurrentHashMap.newKeySet();
+
+    public RagMetrics(MeterRegistry registry,
+                      @Value("${askknightro.metrics.max-class-tags:100}") int maxClassTags) {
+        this.registry = registry;
+        this.maxClassTags = maxClassTags;
+    }
+
+    public <T> T timeAsk(String stage, Integer classId, Supplier<T> body) {
+        return time(ASK, stage, classId, body);
+    }
+
+    public <T> T timeIngest(String stage, Integer classId, Supplier<T> body) {
+        return time(INGEST, stage, classId, body);
+    }
+
+    public void runIngest(String stage, Integer classId, Runnable body) {
+        time(INGEST, stage, classId, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    // For stages that end on another thread (streamed completions)
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stopAsk(Timer.Sample sample, String stage, Integer classId, boolean success) {
+        record(ASK, stage, classId, success, sample);
+    }
+
+    // Per-request sizes: hits returned, chunks and characters sent to the model
+    public void recordAsk(String name, Integer classId, String tagKey, String tagValue, double amount) {
+        DistributionSummary.builder("askknightro.ask." + name)
+                .tag("class", classTag(classId))
+                .tag(tagKey, tagValue)
+                .register(registry)
+                .record(amount);
+    }
+
+    public void countTokens(Integer classId, String type, long tokens) {
+        if (tokens <= 0) return;
+        Counter.builder("askknightro.ask.tokens")
+                .tag("class", classTag(classId))
+                .tag("type", type)
+                .register(registry)
+                .increment(tokens);
+    }
+
+    // Prompt/completion tokens of one model call, when the provider reports them
+    public void recordUsage(Integer classId, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) return;
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) return;
+        countTokens(classId, "prompt", usage.getPromptTokens() == null ? 0 : usage.getPromptTokens());
+        countTokens(classId, "completion", usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens());
+    }
+
+    // The generated text of a model call, or null when it returned none
+    public static String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) return null;
+        return response.getResult().getOutput().getText();
+    }
+
+    public void countIngestChunks(Integer classId, String result, long chunks) {
+        if (chunks <= 0) return;
+        Counter.builder("askknightro.ingest.chunks")
+                .tag("class", classTag(classId))
+                .tag("result", result)
+                .register(registry)
+                .increment(chunks);
+    }
+
+    private <T> T time(String path, String stage, Integer classId, Supplier<T> body) {
+        Timer.Sample sample = Timer.start(registry);
+        boolean success = false;
+        try {
+            T result = body.get();
+            success = true;
+            return result;
+        } finally {
+            record(path, stage, classId, success, sample);
+        }
+    }
+
+    // One measurement, on the histogrammed stage timer and on the per-class one
+    private void record(String path, String stage, Integer classId, boolean success, Timer.Sample sample) {
+        String outcome = success ? "success" : "error";
+        long nanos = sample.stop(Timer.builder("askknightro." + path + ".stage")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(registry));
+        Timer.builder("askknightro." + path + ".class.stage")
+                .tag("stage", stage)
+                .tag("class", classTag(classId))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram(false)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    String classTag(Integer classId) {
+        if (classId == null) return OTHER_CLASSES;
+        if (taggedClasses.contains(classId)) return classId.toString();
+        // Racy by a few entries at most, which is fine for a cardinality guard
+        if (taggedClasses.size() < maxClassTags && taggedClasses.add(classId)) return classId.toString();
+        return taggedClasses.contains(classId) ? classId.toString() : OTHER_CLASSES;
+    }
+}
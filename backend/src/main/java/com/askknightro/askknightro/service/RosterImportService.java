@@ -0,0 +1,218 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.auth.UserRole;
+import com.askknightro.askknightro.dto.RosterEntryDto;
+import com.askknightro.askknightro.dto.RosterImportResultDto;
+import com.askknightro.askknightro.dto.RosterImportResultDto.Status;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Bulk enrollment of a class roster. Whatever the roster size this is a handful of statements:
+ * one course check, one query resolving every student, and one INSERT ... ON CONFLICT DO NOTHING
+ * per INSERT_BATCH students, whose RETURNING clause tells new enrollments from existing ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RosterImportService {
+
+    private static final int MAX_ROWS = 5000;
+    private static final int INSERT_BATCH = 500;
+
+    private static final String RESOLVE_SQL = """
+            SELECT student_id, lower(email) AS email, school_id
+              FROM student
+             WHERE student_id = ANY(?) OR lower(email) = ANY(?) OR school_id = ANY(?)
+             ORDER BY student_id
+            """;
+
+    // Rows are bound as one array, so a batch is a single statement however the driver batches
+    private static final String INSERT_SQL = """
+            INSERT INTO enrollment (student_id, class_id, time_created)
+            SELECT s.id, ?, now() FROM unnest(?) AS s(id)
+            ON CONFLICT (student_id, class_id) DO NOTHING
+            RETURNING student_id
+            """;
+
+    private final CourseCatalog courseCatalog;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public RosterImportResultDto importRoster(int classId, List<RosterEntryDto> roster) {
+        if (roster.size() > MAX_ROWS) {
+            throw new IllegalArgumentException("Roster has " + roster.size() + " rows; at most " + MAX_ROWS + " per import");
+        }
+        if (courseCatalog.find(classId).isEmpty()) {
+            throw new EntityNotFoundException("Course with id " + classId + " not found.");
+        }
+
+        // 1) Resolve every student in one query
+        Set<Integer> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> schoolIds = new HashSet<>();
+        for (RosterEntryDto e : roster) {
+            if (e.getStudentId() != null) ids.add(e.getStudentId());
+            else if (!isBlank(e.getEmail())) emails.add(e.getEmail().strip().toLowerCase(Locale.ROOT));
+            else if (!isBlank(e.getSchoolId())) schoolIds.add(e.getSchoolId().strip());
+        }
+
+        Set<Integer> knownIds = new HashSet<>();
+        Map<String, Integer> byEmail = new HashMap<>();
+        Map<String, Integer> bySchoolId = new HashMap<>();
+        if (!ids.isEmpty() || !emails.isEmpty() || !schoolIds.isEmpty()) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(RESOLVE_SQL);
+                ps.setArray(1, con.createArrayOf("integer", ids.toArray()));
+                ps.setArray(2, con.createArrayOf("varchar", emails.toArray()));
+                ps.setArray(3, con.createArrayOf("varchar", schoolIds.toArray()));
+                return ps;
+            }, rs -> {
+                int id = rs.getInt("student_id");
+                knownIds.add(id);
+                // Lowest id wins if two students share an email or school id
+                if (rs.getString("email") != null) byEmail.putIfAbsent(rs.getString("email"), id);
+                if (rs.getString("school_id") != null) bySchoolId.putIfAbsent(rs.getString("school_id"), id);
+            });
+        }
+
+        // 2) Match each line; repeats of a student already on the roster aren't inserted twice
+        List<RosterImportResultDto.Row> rows = new ArrayList<>(roster.size());
+        LinkedHashSet<Integer> toInsert = new LinkedHashSet<>();
+        for (int i = 0; i < roster.size(); i++) {
+            RosterEntryDto e = roster.get(i);
+            String key;
+            Integer studentId;
+            if (e.getStudentId() != null) {
+                key = e.getStudentId().toString();
+                studentId = knownIds.contains(e.getStudentId()) ? e.getStudentId() : null;
+            } else if (!isBlank(e.getEmail())) {
+                key = e.getEmail().strip();
+                studentId = byEmail.get(key.toLowerCase(Locale.ROOT));
+            } else if (!isBlank(e.getSchoolId())) {
+                key = e.getSchoolId().strip();
+                studentId = bySchoolId.get(key);
+            } else {
+                rows.add(row(i, null, null, Status.INVALID));
+                continue;
+            }
+
+            if (studentId == null) rows.add(row(i, key, null, Status.NOT_FOUND));
+            else if (!toInsert.add(studentId)) rows.add(row(i, key, studentId, Status.DUPLICATE));
+            else rows.add(row(i, key, studentId, null));   // settled after the insert
+        }
+
+        // 3) Insert in batches; RETURNING lists only the rows that were actually new
+        Set<Integer> inserted = new HashSet<>();
+        List<Integer> pending = new ArrayList<>(toInsert);
+        for (int from = 0; from < pending.size(); from += INSERT_BATCH) {
+            Object[] batch = pending.subList(from, Math.min(from + INSERT_BATCH, pending.size())).toArray();
+            inserted.addAll(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+                ps.setInt(1, classId);
+                ps.setArray(2, con.createArrayOf("integer", batch));
+                return ps;
+            }, (rs, n) -> rs.getInt(1)));
+        }
+
+        courseCatalog.evictUsers(inserted, UserRole.STUDENT);
+
+        int enrolled = 0, already = 0, notFound = 0, invalid = 0;
+        for (RosterImportResultDto.Row r : rows) {
+            if (r.getStatus() == null) {
+                r.setStatus(inserted.contains(r.getStudentId()) ? Status.ENROLLED : Status.ALREADY_ENROLLED);
+            }
+            switch (r.getStatus()) {
+                case ENROLLED -> enrolled++;
+                case ALREADY_ENROLLED, DUPLICATE -> already++;
+                case NOT_FOUND -> notFound++;
+                case INVALID -> invalid++;
+            }
+        }
+        log.info("Roster import for classId={}: {} rows, {} enrolled, {} already enrolled, {} not found, {} invalid",
+                classId, roster.size(), enrolled, already, notFound, invalid);
+
+        return RosterImportResultDto.builder()
+                .classId(classId)
+                .total(roster.size())
+                .enrolled(enrolled)
+                .alreadyEnrolled(already)
+                .notFound(notFound)
+                .invalid(invalid)
+                .rows(rows)
+                .build();
+    }
+
+    /**
+     * CSV roster. With a header row, the studentId, email and schoolId columns are used (any order,
+     * case and punctuation ignored). Without one, each line's first cell is an email if it has an "@",
+     * otherwise a school id.
+     */
+    public List<RosterEntryDto> parseCsv(String csv) {
+        List<String> lines = csv.lines().map(String::strip).filter(l -> !l.isEmpty()).toList();
+        if (lines.isEmpty()) return List.of();
+
+        String[] first = cells(lines.get(0));
+        int idCol = -1, emailCol = -1, schoolCol = -1;
+        for (int c = 0; c < first.length; c++) {
+            switch (first[c].toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "")) {
+                case "studentid" -> idCol = c;
+                case "email", "emailaddress" -> emailCol = c;
+                case "schoolid" -> schoolCol = c;
+                default -> { }
+            }
+        }
+        boolean header = idCol >= 0 || emailCol >= 0 || schoolCol >= 0;
+
+        List<RosterEntryDto> out = new ArrayList<>(lines.size());
+        for (String line : header ? lines.subList(1, lines.size()) : lines) {
+            String[] c = cells(line);
+            if (!header) {
+                String v = c[0];
+                out.add(v.contains("@") ? RosterEntryDto.builder().email(v).build()
+                                        : RosterEntryDto.builder().schoolId(v).build());
+                continue;
+            }
+            RosterEntryDto e = new RosterEntryDto();
+            String id = cell(c, idCol);
+            if (!isBlank(id)) {
+                try {
+                    e.setStudentId(Integer.valueOf(id));
+                } catch (NumberFormatException ex) {
+                    out.add(e);   // unreadable id: reported as INVALID rather than matched on another column
+                    continue;
+                }
+            }
+            e.setEmail(cell(c, emailCol));
+            e.setSchoolId(cell(c, schoolCol));
+            out.add(e);
+        }
+        return out;
+    }
+
+    // Roster exports don't put commas inside emails or ids, so a plain split plus quote stripping will do
+    private static String[] cells(String line) {
+        String[] c = line.split(",", -1);
+        for (int i = 0; i < c.length; i++) c[i] = c[i].strip().replaceAll("^\"|\"$", "").strip();
+        return c;
+    }
+
+    private static String cell(String[] c, int col) {
+        return (col < 0 || col >= c.length || c[col].isEmpty()) ? null : c[col];
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static RosterImportResultDto.Row row(int index, String key, Integer studentId, Status status) {
+        return RosterImportResultDto.Row.builder().line(index + 1).key(key).studentId(studentId).status(status).build();
+    }
+}
@@ -0,0 +1,184 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.AskResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-class cache of answered questions, matched by embedding similarity rather than exact text.
+// Cleared for a class whenever its materials change (see CourseMaterialService).
+@Service
+@Slf4j
+public class SemanticAnswerCache {
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final double maxDistance;          // cosine distance, i.e. 1 - cosine similarity
+    private final int maxEntriesPerClass;
+    private final Duration ttl;
+
+    private final Map<Integer, ClassBucket> buckets = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public SemanticAnswerCache(EmbeddingModel embeddingModel,
+                               MeterRegistry meterRegistry,
+                               @Value("${askknightro.answer-cache.enabled:true}") boolean enabled,
+                               @Value("${askknightro.answer-cache.max-distance:0.08}") double maxDistance,
+                               @Value("${askknightro.answer-cache.max-entries-per-class:500}") int maxEntriesPerClass,
+                               @Value("${askknightro.answer-cache.ttl:6h}") Duration ttl) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.maxEntriesPerClass = maxEntriesPerClass;
+        this.ttl = ttl;
+
+        this.hits = Counter.builder("askknightro.answer.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("askknightro.answer.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("askknightro.answer.cache.evictions").register(meterRegistry);
+        Gauge.builder("askknightro.answer.cache.size", buckets, b -> b.values().stream().mapToInt(ClassBucket::size).sum())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Result of a lookup. On a miss it still carries the question embedding and the class generation
+     * seen at lookup time, so {@link #put} neither re-embeds nor stores an answer built from stale materials.
+     */
+    public record Lookup(AskResponse response, float[] embedding, long generation) {
+
+        /** A miss that {@link #put} ignores: the cache is disabled or the caller chose not to use it. */
+        public static final Lookup SKIPPED = new Lookup(null, null, -1);
+
+        public boolean hit() { return response != null; }
+    }
+
+    public Lookup lookup(Integer classId, String question) {
+        if (!enabled) return Lookup.SKIPPED;
+
+        float[] embedding = normalize(embeddingModel.embed(question));
+        ClassBucket bucket = bucket(classId);
+        long generation = bucket.generation();
+
+        AskResponse found = bucket.nearest(embedding, maxDistance, Instant.now().minus(ttl));
+        if (found != null) {
+            hits.increment();
+            return new Lookup(found, embedding, generation);
+        }
+        misses.increment();
+        return new Lookup(null, embedding, generation);
+    }
+
+    public void put(Integer classId, Lookup lookup, AskResponse response) {
+        if (!enabled || lookup.embedding() == null || response == null) return;
+        int evicted = bucket(classId).add(lookup.embedding(), response, lookup.generation(), maxEntriesPerClass);
+        if (evicted > 0) evictions.increment(evicted);
+    }
+
+    // Called whenever a class's materials are created, replaced or deleted
+    public void invalidateClass(Integer classId) {
+        if (classId == null) return;
+        ClassBucket bucket = buckets.get(classId);
+        if (bucket != null) {
+            bucket.clear();
+            log.debug("Answer cache cleared for classId={}", classId);
+        }
+    }
+
+    private ClassBucket bucket(Integer classId) {
+        return buckets.computeIfAbsent(classId, id -> new ClassBucket());
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        norm = Math.sqrt(norm);
+        if (norm == 0) return v;
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / norm);
+        return out;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) s += a[i] * b[i];
+        return s;
+    }
+
+    private record Entry(float[] embedding, AskResponse response, Instant createdAt) {}
+
+    // Oldest-first deque per class; a linear scan is fine at a few hundred entries
+    private static final class ClassBucket {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private volatile long generation;
+
+        long generation() { return generation; }
+
+        int size() { return entries.size(); }
+
+        AskResponse nearest(float[] embedding, double maxDistance, Instant notBefore) {
+            lock.lock();
+            try {
+                // Expired entries are always at the head
+                while (!entries.isEmpty() && entries.peekFirst().createdAt().isBefore(notBefore)) {
+                    entries.pollFirst();
+                }
+                AskResponse best = null;
+                double bestDistance = maxDistance;
+                for (Iterator<Entry> it = entries.descendingIterator(); it.hasNext(); ) {
+                    Entry e = it.next();
+                    if (e.embedding().length != embedding.length) continue;
+                    double distance = 1.0 - dot(e.embedding(), embedding);
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        best = e.response();
+                    }
+                }
+                return best;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int add(float[] embedding, AskResponse response, long seenGeneration, int maxEntries) {
+            lock.lock();
+            try {
+                // Materials changed while this answer was being generated: don't cache it
+                if (seenGeneration != generation) return 0;
+                entries.addLast(new Entry(embedding, response, Instant.now()));
+                int evicted = 0;
+                while (entries.size() > maxEntries) {
+                    entries.pollFirst();
+                    evicted++;
+                }
+                return evicted;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                generation++;
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
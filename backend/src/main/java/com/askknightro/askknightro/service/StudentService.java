@@ -1,14 +1,15 @@
 package com.askknightro.askknightro.service;
 
 import com.askknightro.askknightro.dto.StudentDto;
+import com.askknightro.askknightro.dto.UnifiedSignupRequestDto.Role;
 import com.askknightro.askknightro.entity.Student;
 import com.askknightro.askknightro.repository.StudentRepository;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Locale;
+import java.util.Optional;
 
 import org.jline.utils.Log;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,7 +20,8 @@ public class StudentService
 {
 
     private final StudentRepository studentRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final CredentialHashingService credentialHashing;
+    private final IdentityCache identityCache;
 
     // Method for creating a Student Entity
     public StudentDto createStudent(StudentDto studentDto)
@@ -30,11 +32,7 @@ public class StudentService
         Student studentEntity = Student.builder()
                 .name(studentDto.getName())
                 .email(studentDto.getEmail())
-                .password(
-                        studentDto.getPassword() == null || studentDto.getPassword().isBlank()
-                                ? null
-                                : passwordEncoder.encode(studentDto.getPassword()) // encryption
-                )
+                .password(credentialHashing.hash(studentDto.getPassword())) // encryption, concurrency-capped
                 .profilePicture(studentDto.getProfilePicture())
                 .yearStanding(studentDto.getYearStanding())
                 .major(studentDto.getMajor())
@@ -84,14 +82,13 @@ public class StudentService
                 .build();
         }
 
-        String hashed = (studentDto.getPassword() == null || studentDto.getPassword().isBlank())
-            ? null
-            : passwordEncoder.encode(studentDto.getPassword());
+        // Cognito already holds this password; by default nothing is hashed or stored locally
+        String hashed = credentialHashing.hashCognitoManaged(studentDto.getPassword());
 
         Student studentEntity = Student.builder()
             .name(studentDto.getName())
             .email(email)
-            .password(hashed)                // store HASH only
+            .password(hashed)                // HASH only, or null
             .profilePicture(studentDto.getProfilePicture())
             .yearStanding(studentDto.getYearStanding())
             .major(studentDto.getMajor())
@@ -119,6 +116,11 @@ public class StudentService
             .build();
     }
 
+    /** Local id of the student linked to this Cognito sub; cached, so repeat calls don't touch the database. */
+    public Optional<Integer> findIdByCognitoSub(String sub) {
+        return identityCache.resolve(sub, Role.STUDENT, studentRepository::findStudentIdByCognitoSub);
+    }
+
     /** Called at /confirm-signup to link the existing draft to Cognito IDs. */
     public void attachCognitoIdentityOnConfirm(String email, String sub, String username) {
         var s = studentRepository.findByEmail(email.toLowerCase(Locale.ROOT))
@@ -126,6 +128,7 @@ public class StudentService
         s.setCognitoSub(sub);
         s.setCognitoUsername(username);
         studentRepository.save(s);
+        identityCache.put(sub, Role.STUDENT, s.getStudentId());
     }
 
     // Method for retrieving a Student Entity
@@ -169,7 +172,7 @@ public class StudentService
         if (requestStudentDto.getName() != null) studentEntity.setName(requestStudentDto.getName());
         //if (requestStudentDto.getEmail() != null) studentEntity.setEmail(requestStudentDto.getEmail());
         if (requestStudentDto.getPassword() != null && !requestStudentDto.getPassword().isBlank()) {
-            studentEntity.setPassword(passwordEncoder.encode(requestStudentDto.getPassword()));
+            studentEntity.setPassword(credentialHashing.hash(requestStudentDto.getPassword()));
         }
         if (requestStudentDto.getProfilePicture() != null) studentEntity.setProfilePicture(requestStudentDto.getProfilePicture());
         if (requestStudentDto.getYearStanding() != null) studentEntity.setYearStanding(requestStudentDto.getYearStanding());
@@ -201,10 +204,11 @@ public class StudentService
                 .orElseThrow(() -> new RuntimeException("Student not found with id: " + id));
 
         studentRepository.delete(student);
+        identityCache.evict(student.getCognitoSub(), Role.STUDENT);
     }
 
     public StudentDto ensureStudentFromLogin(String sub, String username, String email, String name) {
-        if (studentRepository.existsByCognitoSub(sub)) {
+        if (findIdByCognitoSub(sub).isPresent()) {
                 // already present; optionally return the existing mapped DTO
                 // return mapper(existing);
                 return null; // if you don't need a return value
@@ -219,6 +223,7 @@ public class StudentService
                 .build();
 
         studentRepository.save(student);
+        identityCache.put(sub, Role.STUDENT, student.getStudentId());
 
         return StudentDto.builder()
                 .studentId(student.getStudentId())
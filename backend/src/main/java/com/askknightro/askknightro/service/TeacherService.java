@@ -1,13 +1,14 @@
 package com.askknightro.askknightro.service;
 
 import com.askknightro.askknightro.dto.TeacherDto;
+import com.askknightro.askknightro.dto.UnifiedSignupRequestDto.Role;
 import com.askknightro.askknightro.entity.Teacher;
 import com.askknightro.askknightro.repository.TeacherRepository;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Locale;
+import java.util.Optional;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -16,7 +17,8 @@ public class TeacherService
 {
 
     private final TeacherRepository teacherRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final CredentialHashingService credentialHashing;
+    private final IdentityCache identityCache;
 
     // Method for creating a Teacher Entity
     public TeacherDto createTeacher(TeacherDto teacherDto)
@@ -29,9 +31,7 @@ public class TeacherService
                 .department(teacherDto.getDepartment())
                 .profilePicture(teacherDto.getProfilePicture())
                 .bio(teacherDto.getBio())
-                .password(teacherDto.getPassword() == null || teacherDto.getPassword().isBlank()
-                        ? null
-                        : passwordEncoder.encode(teacherDto.getPassword()))
+                .password(credentialHashing.hash(teacherDto.getPassword()))
                 .build();
 
         // Saving to Postgres 
@@ -63,9 +63,8 @@ public class TeacherService
                     .build();
         }
 
-        String hashed = (teacherDto.getPassword() == null || teacherDto.getPassword().isBlank())
-                ? null
-                : passwordEncoder.encode(teacherDto.getPassword());
+        // Cognito already holds this password; by default nothing is hashed or stored locally
+        String hashed = credentialHashing.hashCognitoManaged(teacherDto.getPassword());
 
         Teacher teacherEntity = Teacher.builder()
                 .name(teacherDto.getName())
@@ -87,6 +86,11 @@ public class TeacherService
                 .build();
     }
 
+    /** Local id of the teacher linked to this Cognito sub; cached, so repeat calls don't touch the database. */
+    public Optional<Integer> findIdByCognitoSub(String sub) {
+        return identityCache.resolve(sub, Role.TEACHER, teacherRepository::findTeacherIdByCognitoSub);
+    }
+
     public void attachCognitoIdentityOnConfirm(String email, String sub, String cognitoUsername) {
         Teacher teacher = teacherRepository.findByEmail(email.toLowerCase(Locale.ROOT))
                 .orElseThrow(() -> new RuntimeException("Teacher not found with email: " + email));
@@ -95,6 +99,7 @@ public class TeacherService
         teacher.setCognitoUsername(cognitoUsername);
 
         teacherRepository.save(teacher);
+        identityCache.put(sub, Role.TEACHER, teacher.getTeacherId());
     }
 
     // Method for retrieving a Teacher Entity
@@ -127,7 +132,7 @@ public class TeacherService
         if (teacherDto.getProfilePicture() != null) teacherEntity.setProfilePicture(teacherDto.getProfilePicture());
         if (teacherDto.getBio() != null) teacherEntity.setBio(teacherDto.getBio());
         if (teacherDto.getPassword() != null && !teacherDto.getPassword().isBlank()) {
-            teacherDto.setPassword(passwordEncoder.encode(teacherDto.getPassword()));
+            teacherEntity.setPassword(credentialHashing.hash(teacherDto.getPassword()));
         }
 
         Teacher updatedTeacher = teacherRepository.save(teacherEntity);
@@ -151,10 +156,11 @@ public class TeacherService
                 .orElseThrow(() -> new RuntimeException("Teacher not found with id: " + id));
 
         teacherRepository.delete(teacher);
+        identityCache.evict(teacher.getCognitoSub(), Role.TEACHER);
     }
 
     public TeacherDto ensureTeacherFromLogin(String sub, String username, String email, String name) {
-        if (teacherRepository.existsByCognitoSub(sub)) {
+        if (findIdByCognitoSub(sub).isPresent()) {
                 return null;
         }
 
@@ -167,6 +173,7 @@ public class TeacherService
                 .build();
 
         teacherRepository.save(teacher);
+        identityCache.put(sub, Role.TEACHER, teacher.getTeacherId());
 
         return TeacherDto.builder()
                 .teacherId(teacher.getTeacherId())
@@ -0,0 +1,561 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.VectorIndexStatusDto;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.DescribeIndexResponse;
+import io.milvus.grpc.QueryResults;
+import io.milvus.grpc.ShowPartitionsResponse;
+import io.milvus.orm.iterator.QueryIterator;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.alias.AlterAliasParam;
+import io.milvus.param.alias.CreateAliasParam;
+import io.milvus.param.collection.CreateCollectionParam;
+import io.milvus.param.collection.DescribeCollectionParam;
+import io.milvus.param.collection.DropCollectionParam;
+import io.milvus.param.collection.FlushParam;
+import io.milvus.param.collection.LoadCollectionParam;
+import io.milvus.param.collection.ReleaseCollectionParam;
+import io.milvus.param.collection.RenameCollectionParam;
+import io.milvus.param.dml.DeleteParam;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryIteratorParam;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.param.index.CreateIndexParam;
+import io.milvus.param.index.DescribeIndexParam;
+import io.milvus.param.partition.CreatePartitionParam;
+import io.milvus.param.partition.DropPartitionParam;
+import io.milvus.param.partition.HasPartitionParam;
+import io.milvus.param.partition.LoadPartitionsParam;
+import io.milvus.param.partition.ReleasePartitionsParam;
+import io.milvus.param.partition.ShowPartitionsParam;
+import io.milvus.response.DescCollResponseWrapper;
+import io.milvus.response.DescIndexResponseWrapper;
+import io.milvus.response.QueryResultsWrapper;
+import io.milvus.response.ShowPartResponseWrapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the ANN index on the embedding field: applies the configured profile (HNSW / IVF_FLAT / IVF_SQ8)
+ * on demand (or at startup if asked), and turns the index actually in Milvus into search params.
+ *
+ * <p>Rebuilds are online. The configured collection name is an alias; a rebuild copies the live
+ * collection into a new one, builds the index there, and swaps the alias, so search and ingest keep
+ * using the old collection throughout. Writes made during the copy are journaled (see {@link #write})
+ * and replayed onto the new collection before the swap.
+ */
+@Service
+@Profile("!loadtest")
+@Slf4j
+public class VectorIndexService {
+
+    private static final long COPY_BATCH = 1000;
+    // Replay passes while writers keep going; whatever is left is replayed with writers held off
+    private static final int CATCH_UP_ROUNDS = 5;
+    private static final DateTimeFormatter GENERATION = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /** A write to the live collection, replayed onto the new collection when it happens during a rebuild. */
+    public sealed interface Change {
+        record Upserted(String partition, List<String> ids) implements Change {}
+        record Deleted(String partition, String expr) implements Change {}
+        record PartitionDropped(String partition) implements Change {}
+    }
+
+    private final MilvusServiceClient milvusClient;
+    private final String databaseName;
+    private final String collectionName;
+    private final String idField;
+    private final String contentField;
+    private final String metadataField;
+    private final String embeddingField;
+
+    // Configured profile
+    private final IndexType profileType;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int hnswEf;
+    private final int ivfNlist;
+    private final int ivfNprobe;
+    private final boolean applyOnStartup;
+
+    private final ThreadPoolTaskExecutor rebuildPool;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // Writers share the read side; the rebuild takes the write side only for its last replay and the swap
+    private final ReentrantReadWriteLock writes = new ReentrantReadWriteLock();
+    private volatile Queue<Change> journal;   // non-null while a rebuild is copying
+
+    // What Milvus reported last; drives searchParams()
+    private volatile IndexType activeType;
+    private volatile JsonObject activeParams = new JsonObject();
+    private volatile String lastError;
+    private volatile LocalDateTime lastRebuildAt;
+
+    public VectorIndexService(MilvusServiceClient milvusClient,
+                              @Value("${spring.ai.vectorstore.milvus.database-name:default}") String databaseName,
+                              @Value("${spring.ai.vectorstore.milvus.collection-name:vector_store}") String collectionName,
+                              @Value("${spring.ai.vectorstore.milvus.id-field-name:doc_id}") String idField,
+                              @Value("${spring.ai.vectorstore.milvus.text-field-name:content}") String contentField,
+                              @Value("${spring.ai.vectorstore.milvus.metadata-field-name:metadata}") String metadataField,
+                              @Value("${spring.ai.vectorstore.milvus.vector-field-name:embedding}") String embeddingField,
+                              @Value("${askknightro.milvus.index.type:HNSW}") String type,
+                              @Value("${askknightro.milvus.index.hnsw.m:16}") int hnswM,
+                              @Value("${askknightro.milvus.index.hnsw.ef-construction:200}") int hnswEfConstruction,
+                              @Value("${askknightro.milvus.index.hnsw.ef:64}") int hnswEf,
+                              @Value("${askknightro.milvus.index.ivf.nlist:128}") int ivfNlist,
+                              @Value("${askknightro.milvus.index.ivf.nprobe:16}") int ivfNprobe,
+                              @Value("${askknightro.milvus.index.apply-on-startup:false}") boolean applyOnStartup) {
+        this.milvusClient = milvusClient;
+        this.databaseName = databaseName;
+        this.collectionName = collectionName;
+        this.idField = idField;
+        this.contentField = contentField;
+        this.metadataField = metadataField;
+        this.embeddingField = embeddingField;
+        this.profileType = IndexType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        if (profileType != IndexType.HNSW && profileType != IndexType.IVF_FLAT && profileType != IndexType.IVF_SQ8) {
+            throw new IllegalArgumentException("Unsupported askknightro.milvus.index.type: " + type);
+        }
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.hnswEf = hnswEf;
+        this.ivfNlist = ivfNlist;
+        this.ivfNprobe = ivfNprobe;
+        this.applyOnStartup = applyOnStartup;
+
+        this.rebuildPool = new ThreadPoolTaskExecutor();
+        rebuildPool.setCorePoolSize(1);
+        rebuildPool.setMaxPoolSize(1);
+        rebuildPool.setThreadNamePrefix("index-rebuild-");
+        rebuildPool.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildPool.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyProfile() {
+        try {
+            refresh();
+            if (applyOnStartup && !matchesProfile()) {
+                log.info("Vector index is {} {}, profile wants {} {}; rebuilding",
+                        activeType, activeParams, profileType, profileParams());
+                startRebuild();
+            }
+        } catch (Exception e) {
+            log.error("Could not check vector index against the configured profile", e);
+        }
+    }
+
+    /**
+     * Search params for the index actually in use. HNSW needs ef >= topK; IVF nprobe can't exceed nlist.
+     */
+    public String searchParams(int topK) {
+        IndexType type = activeType;
+        JsonObject p = new JsonObject();
+        if (type == IndexType.HNSW) {
+            p.addProperty("ef", Math.max(hnswEf, topK));
+        } else if (type == IndexType.IVF_FLAT || type == IndexType.IVF_SQ8 || type == IndexType.IVF_PQ) {
+            int nlist = activeParams.has("nlist") ? activeParams.get("nlist").getAsInt() : ivfNlist;
+            p.addProperty("nprobe", Math.min(ivfNprobe, nlist));
+        }
+        // FLAT / AUTOINDEX / unknown: no tuning knobs
+        return p.toString();
+    }
+
+    public VectorIndexStatusDto status() {
+        return VectorIndexStatusDto.builder()
+                .collection(collectionName)
+                .activeType(activeType == null ? null : activeType.name())
+                .activeParams(activeParams.toString())
+                .profileType(profileType.name())
+                .profileParams(profileParams().toString())
+                .rebuilding(rebuilding.get())
+                .lastRebuildAt(lastRebuildAt)
+                .lastError(lastError)
+                .build();
+    }
+
+    /** Starts a rebuild to the configured profile in the background; false if one is already running. */
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        rebuildPool.execute(() -> {
+            try {
+                rebuild();
+                lastError = null;
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                log.error("Vector index rebuild failed", e);
+            } finally {
+                lastRebuildAt = LocalDateTime.now();
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Runs a write against the live collection. While a rebuild is copying, the change is recorded so
+     * it can be replayed onto the new collection; the write itself is never delayed except during the
+     * final replay and alias swap.
+     */
+    public void write(Change change, Runnable op) {
+        writes.readLock().lock();
+        try {
+            op.run();
+            Queue<Change> j = journal;
+            if (j != null) j.add(change);
+        } finally {
+            writes.readLock().unlock();
+        }
+    }
+
+    // Copy -> index -> load -> catch up -> swap. The old collection stays loaded and searchable until the
+    // swap, and is only dropped after it, so a failure at any step leaves search exactly as it was.
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        String source = physicalCollection();
+        String target = collectionName + "_" + GENERATION.format(LocalDateTime.now());
+
+        journal = new ConcurrentLinkedQueue<>();
+        String retired;
+        try {
+            DescCollResponseWrapper schema = describeCollection(source);
+            check(milvusClient.createCollection(CreateCollectionParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(target)
+                    .withFieldTypes(schema.getFields())
+                    .withEnableDynamicField(schema.getEnableDynamicField())
+                    .build()), "create collection");
+
+            long copied = 0;
+            for (String partition : partitions(source)) {
+                ensurePartition(target, partition, false);
+                copied += copyPartition(source, target, partition);
+            }
+            check(milvusClient.flush(FlushParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .addCollectionName(target)
+                    .withSyncFlush(Boolean.TRUE)
+                    .build()), "flush");
+            check(milvusClient.createIndex(CreateIndexParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(target)
+                    .withFieldName(embeddingField)
+                    .withIndexType(profileType)
+                    .withMetricType(MetricType.COSINE)
+                    .withExtraParam(profileParams().toString())
+                    .withSyncMode(Boolean.TRUE)
+                    .build()), "create index");
+            check(milvusClient.loadCollection(LoadCollectionParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(target)
+                    .withSyncLoad(Boolean.TRUE)
+                    .build()), "load collection");
+            log.info("Vector index rebuild: copied {} chunks into {} and indexed them as {}", copied, target, profileType);
+
+            for (int round = 0; round < CATCH_UP_ROUNDS && !journal.isEmpty(); round++) replay(source, target);
+            writes.writeLock().lock();
+            try {
+                replay(source, target);
+                retired = swapAlias(source, target);
+                journal = null;
+            } finally {
+                writes.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            journal = null;
+            dropQuietly(target);
+            throw e;
+        }
+
+        refresh();
+        dropQuietly(retired);
+        log.info("Vector index rebuilt as {} {} in {} ms", activeType, activeParams, System.currentTimeMillis() - started);
+    }
+
+    // Points the alias at target and returns the collection it replaces
+    private String swapAlias(String source, String target) {
+        if (!source.equals(collectionName)) {
+            check(milvusClient.alterAlias(AlterAliasParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withAlias(collectionName)
+                    .withCollectionName(target)
+                    .build()), "alter alias");
+            return source;
+        }
+        // First rebuild: the name still belongs to a plain collection. Move it aside so the alias can take
+        // the name; dense search is unavailable only between the rename and the alias (milliseconds).
+        String legacy = collectionName + "_legacy_" + GENERATION.format(LocalDateTime.now());
+        check(milvusClient.renameCollection(RenameCollectionParam.newBuilder()
+                .withOldDatabaseName(databaseName)
+                .withOldCollectionName(collectionName)
+                .withNewCollectionName(legacy)
+                .build()), "rename collection");
+        try {
+            check(milvusClient.createAlias(CreateAliasParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withAlias(collectionName)
+                    .withCollectionName(target)
+                    .build()), "create alias");
+        } catch (RuntimeException e) {
+            check(milvusClient.renameCollection(RenameCollectionParam.newBuilder()
+                    .withOldDatabaseName(databaseName)
+                    .withOldCollectionName(legacy)
+                    .withNewCollectionName(collectionName)
+                    .build()), "rename collection back");
+            throw e;
+        }
+        return legacy;
+    }
+
+    private long copyPartition(String source, String target, String partition) {
+        R<QueryIterator> opened = milvusClient.queryIterator(QueryIteratorParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(source)
+                .withPartitionNames(List.of(partition))
+                .withOutFields(List.of(idField, contentField, metadataField, embeddingField))
+                .withBatchSize(COPY_BATCH)
+                .withConsistencyLevel(ConsistencyLevelEnum.STRONG)   // everything written before the journal started
+                .build());
+        check(opened, "query iterator");
+        QueryIterator rows = opened.getData();
+        long copied = 0;
+        try {
+            for (List<QueryResultsWrapper.RowRecord> batch = rows.next(); !batch.isEmpty(); batch = rows.next()) {
+                upsert(target, partition, batch);
+                copied += batch.size();
+            }
+        } finally {
+            rows.close();
+        }
+        return copied;
+    }
+
+    // Applies journaled changes in order. Upserts re-read the rows' current state from the source, so a
+    // later write to the same id is never undone; ids gone from the source are deleted from the target.
+    private void replay(String source, String target) {
+        for (Change change; (change = journal.poll()) != null; ) {
+            switch (change) {
+                case Change.Upserted u -> {
+                    List<QueryResultsWrapper.RowRecord> rows = fetch(source, u.partition(), u.ids());
+                    if (!rows.isEmpty()) {
+                        ensurePartition(target, u.partition(), true);
+                        upsert(target, u.partition(), rows);
+                    }
+                    Set<String> present = rows.stream().map(r -> String.valueOf(r.get(idField))).collect(Collectors.toSet());
+                    List<String> gone = u.ids().stream().filter(id -> !present.contains(id)).toList();
+                    if (!gone.isEmpty()) delete(target, null, idIn(gone));
+                }
+                case Change.Deleted d -> {
+                    if (d.partition() == null || hasPartition(target, d.partition())) delete(target, d.partition(), d.expr());
+                }
+                case Change.PartitionDropped dp -> {
+                    if (hasPartition(target, dp.partition())) {
+                        check(milvusClient.releasePartitions(ReleasePartitionsParam.newBuilder()
+                                .withDatabaseName(databaseName)
+                                .withCollectionName(target)
+                                .withPartitionNames(List.of(dp.partition()))
+                                .build()), "release partition");
+                        check(milvusClient.dropPartition(DropPartitionParam.newBuilder()
+                                .withDatabaseName(databaseName)
+                                .withCollectionName(target)
+                                .withPartitionName(dp.partition())
+                                .build()), "drop partition");
+                    }
+                }
+            }
+        }
+    }
+
+    private List<QueryResultsWrapper.RowRecord> fetch(String source, String partition, List<String> ids) {
+        if (!hasPartition(source, partition)) return List.of();
+        R<QueryResults> result = milvusClient.query(QueryParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(source)
+                .withPartitionNames(List.of(partition))
+                .withExpr(idIn(ids))
+                .withOutFields(List.of(idField, contentField, metadataField, embeddingField))
+                .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+                .build());
+        check(result, "query");
+        return new QueryResultsWrapper(result.getData()).getRowRecords();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void upsert(String target, String partition, List<QueryResultsWrapper.RowRecord> rows) {
+        List<String> ids = new ArrayList<>(rows.size());
+        List<String> contents = new ArrayList<>(rows.size());
+        List<JsonObject> metadata = new ArrayList<>(rows.size());
+        List<List<Float>> embeddings = new ArrayList<>(rows.size());
+        for (QueryResultsWrapper.RowRecord row : rows) {
+            ids.add(String.valueOf(row.get(idField)));
+            contents.add(String.valueOf(row.get(contentField)));
+            Object meta = row.get(metadataField);
+            metadata.add(JsonParser.parseString(meta == null ? "{}" : meta.toString()).getAsJsonObject());
+            embeddings.add((List<Float>) row.get(embeddingField));
+        }
+        check(milvusClient.upsert(UpsertParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(target)
+                .withPartitionName(partition)
+                .withFields(List.of(
+                        new InsertParam.Field(idField, ids),
+                        new InsertParam.Field(contentField, contents),
+                        new InsertParam.Field(metadataField, metadata),
+                        new InsertParam.Field(embeddingField, embeddings)))
+                .build()), "upsert");
+    }
+
+    private void delete(String target, String partition, String expr) {
+        DeleteParam.Builder param = DeleteParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(target)
+                .withExpr(expr);
+        if (partition != null) param.withPartitionName(partition);
+        check(milvusClient.delete(param.build()), "delete");
+    }
+
+    private void ensurePartition(String collection, String partition, boolean load) {
+        if (hasPartition(collection, partition)) return;
+        check(milvusClient.createPartition(CreatePartitionParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collection)
+                .withPartitionName(partition)
+                .build()), "create partition");
+        if (load) {
+            check(milvusClient.loadPartitions(LoadPartitionsParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collection)
+                    .withPartitionNames(List.of(partition))
+                    .build()), "load partition");
+        }
+    }
+
+    private boolean hasPartition(String collection, String partition) {
+        R<Boolean> result = milvusClient.hasPartition(HasPartitionParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collection)
+                .withPartitionName(partition)
+                .build());
+        check(result, "has partition");
+        return Boolean.TRUE.equals(result.getData());
+    }
+
+    private List<String> partitions(String collection) {
+        R<ShowPartitionsResponse> result = milvusClient.showPartitions(ShowPartitionsParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collection)
+                .build());
+        check(result, "show partitions");
+        return new ShowPartResponseWrapper(result.getData()).getPartitionsInfo().stream()
+                .map(ShowPartResponseWrapper.PartitionInfo::getName)
+                .toList();
+    }
+
+    // The collection the configured name resolves to: the alias target, or the name itself before the
+    // first rebuild turned it into an alias
+    private String physicalCollection() {
+        return describeCollection(collectionName).getCollectionName();
+    }
+
+    private DescCollResponseWrapper describeCollection(String name) {
+        R<DescribeCollectionResponse> result = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(name)
+                .build());
+        check(result, "describe collection");
+        return new DescCollResponseWrapper(result.getData());
+    }
+
+    private void dropQuietly(String collection) {
+        try {
+            milvusClient.releaseCollection(ReleaseCollectionParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collection)
+                    .build());
+            check(milvusClient.dropCollection(DropCollectionParam.newBuilder()
+                    .withDatabaseName(databaseName)
+                    .withCollectionName(collection)
+                    .build()), "drop collection");
+        } catch (RuntimeException e) {
+            log.warn("Could not drop collection {}; drop it by hand: {}", collection, e.getMessage());
+        }
+    }
+
+    // Chunk ids are UUIDs we generate, so quoting them verbatim is safe
+    private String idIn(Collection<String> ids) {
+        return idField + " in [" + ids.stream().map(id -> "\"" + id + "\"").collect(Collectors.joining(",")) + "]";
+    }
+
+    private void refresh() {
+        DescIndexResponseWrapper.IndexDesc desc = describe();
+        if (desc == null) {
+            activeType = null;
+            activeParams = new JsonObject();
+            return;
+        }
+        activeType = desc.getIndexType();
+        String extra = desc.getExtraParam();
+        activeParams = (extra == null || extra.isBlank()) ? new JsonObject() : JsonParser.parseString(extra).getAsJsonObject();
+    }
+
+    private DescIndexResponseWrapper.IndexDesc describe() {
+        R<DescribeIndexResponse> result = milvusClient.describeIndex(DescribeIndexParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(physicalCollection())
+                .withFieldName(embeddingField)
+                .build());
+        if (result.getStatus() == R.Status.IndexNotExist.getCode()) return null;
+        check(result, "describe index");
+        return new DescIndexResponseWrapper(result.getData()).getIndexDescByFieldName(embeddingField);
+    }
+
+    private boolean matchesProfile() {
+        if (activeType != profileType) return false;
+        JsonObject want = profileParams();
+        // Milvus echoes params back as strings, so compare textually
+        return want.keySet().stream().allMatch(k ->
+                activeParams.has(k) && activeParams.get(k).getAsString().equals(want.get(k).getAsString()));
+    }
+
+    private JsonObject profileParams() {
+        JsonObject p = new JsonObject();
+        if (profileType == IndexType.HNSW) {
+            p.addProperty("M", hnswM);
+            p.addProperty("efConstruction", hnswEfConstruction);
+        } else {
+            p.addProperty("nlist", ivfNlist);
+        }
+        return p;
+    }
+
+    private static void check(R<?> result, String op) {
+        if (result.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("Milvus " + op + " failed: " + result.getMessage(), result.getException());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.askknightro.askknightro.util;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Lazily splits a character stream into token-sized chunks, reading it one window at a time.
+ * Only the current window (plus one carried-over chunk) is ever in memory, so peak heap per
+ * upload is bounded by the window size rather than the file size.
+ *
+ * Chunk boundaries depend only on the input and the window size, so re-reading the same file
+ * (e.g. when resuming a job) yields the same chunks with the same indexes.
+ */
+public final class StreamingTextChunker implements Iterator<Document>, Closeable {
+
+    private final Reader reader;
+    private final TokenTextSplitter splitter;
+    private final Map<String, Object> baseMeta;
+    private final IntFunction<String> idForIndex;
+    private final int windowChars;
+
+    private final char[] readBuf = new char[8192];
+    private final StringBuilder window = new StringBuilder();
+    private final Deque<String> pending = new ArrayDeque<>();
+    private boolean eof;
+    private int nextIndex;
+
+    public StreamingTextChunker(Reader reader, TokenTextSplitter splitter, Map<String, Object> baseMeta,
+                                IntFunction<String> idForIndex, int windowChars) {
+        this.reader = reader;
+        this.splitter = splitter;
+        this.baseMeta = baseMeta;
+        this.idForIndex = idForIndex;
+        this.windowChars = windowChars;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pending.isEmpty() && !(eof && window.isEmpty())) {
+            fillAndSplit();
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int index = nextIndex++;
+        String text = pending.pollFirst();
+        Map<String, Object> meta = new HashMap<>(baseMeta);
+        meta.put("chunk_index", index);
+        meta.put("content_hash", ContentHash.sha256Hex(text));
+        return Document.builder()
+                .id(idForIndex.apply(index))
+                .text(text)
+                .metadata(meta)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void fillAndSplit() {
+        try {
+            while (!eof && window.length() < windowChars) {
+                int n = reader.read(readBuf);
+                if (n < 0) eof = true;
+                else window.append(readBuf, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int cut = eof ? window.length() : cutPoint();
+        String slice = window.substring(0, cut);
+        window.delete(0, cut);
+        if (slice.isBlank()) return;
+
+        List<Document> split = splitter.apply(List.of(new Document(slice)));
+        for (int i = 0; i < split.size(); i++) {
+            String text = split.get(i).getText();
+            // The last chunk of a window is usually short; fold it into the next window instead
+            if (i == split.size() - 1 && !eof && split.size() > 1) {
+                window.insert(0, text + "\n");
+            } else {
+                pending.addLast(text);
+            }
+        }
+    }
+
+    // Prefer ending a window on a paragraph or sentence break in its last quarter
+    private int cutPoint() {
+        int floor = windowChars * 3 / 4;
+        int para = window.lastIndexOf("\n\n");
+        if (para >= floor) return para + 2;
+        for (int i = window.length() - 1; i >= floor; i--) {
+            char c = window.charAt(i);
+            if ((c == '.' || c == '?' || c == '!' || c == '\n') && i + 1 < window.length()
+                    && Character.isWhitespace(window.charAt(i + 1))) {
+                return i + 1;
+            }
+        }
+        return window.length();
+    }
+}
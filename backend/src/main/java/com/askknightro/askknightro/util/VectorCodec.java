@@ -0,0 +1,57 @@
+package com.askknightro.askknightro.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Compact little-endian blobs for embedding vectors: float32 (exact) or float16 (half the size)
+public final class VectorCodec {
+
+    public static final String F32 = "f32";
+    public static final String F16 = "f16";
+
+    private VectorCodec() {}
+
+    public static byte[] encode(float[] v, String encoding) {
+        boolean half = F16.equals(encoding);
+        ByteBuffer buf = ByteBuffer.allocate(v.length * (half ? 2 : 4)).order(ByteOrder.LITTLE_ENDIAN);
+        for (float f : v) {
+            if (half) buf.putShort(toHalf(f));
+            else buf.putFloat(f);
+        }
+        return buf.array();
+    }
+
+    public static float[] decode(byte[] bytes, String encoding, int dims) {
+        boolean half = F16.equals(encoding);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] out = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            out[i] = half ? fromHalf(buf.getShort()) : buf.getFloat();
+        }
+        return out;
+    }
+
+    // IEEE 754 binary16, round-to-nearest; embedding values are small so subnormals are simply flushed
+    static short toHalf(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mant = bits & 0x7fffff;
+
+        if (exp <= 0) return (short) sign;                       // underflow -> signed zero
+        if (exp >= 0x1f) return (short) (sign | 0x7c00);         // overflow / inf / nan -> inf
+        int half = sign | (exp << 10) | (mant >>> 13);
+        if ((mant & 0x1000) != 0) half++;                        // round (carry into exponent is fine)
+        return (short) half;
+    }
+
+    static float fromHalf(short h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+
+        if (exp == 0) return Float.intBitsToFloat(sign);         // zero (subnormals were flushed)
+        if (exp == 0x1f) return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mant << 13));
+    }
+}
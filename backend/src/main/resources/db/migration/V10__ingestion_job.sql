@@ -0,0 +1,29 @@
+-- V10__ingestion_job.sql
+-- Durable state for background material ingestion (split -> embed -> insert).
+-- A job row survives restarts; QUEUED/RUNNING jobs are picked up again on startup.
+
+CREATE TABLE IF NOT EXISTS public.ingestion_job (
+    job_id        INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    material_id   INT          NOT NULL,
+    class_id      INT          NOT NULL,
+    kind          VARCHAR(20)  NOT NULL,          -- CREATE | REPLACE
+    status        VARCHAR(20)  NOT NULL,          -- QUEUED | RUNNING | COMPLETED | FAILED
+    file_path     VARCHAR(1024),                  -- staged upload in the spool dir (removed when done)
+    file_name     VARCHAR(255),
+    display_name  VARCHAR(255),
+    chunks_done   INT          NOT NULL DEFAULT 0,
+    chunks_total  INT,
+    error         TEXT,
+    created_at    TIMESTAMP    NOT NULL DEFAULT now(),
+    updated_at    TIMESTAMP    NOT NULL DEFAULT now(),
+
+    CONSTRAINT fk_ingestion_job_material
+        FOREIGN KEY (material_id) REFERENCES public.course_material(id) ON DELETE CASCADE
+);
+
+-- Startup resume scans for unfinished jobs
+CREATE INDEX IF NOT EXISTS ix_ingestion_job_status
+    ON public.ingestion_job (status);
+
+CREATE INDEX IF NOT EXISTS ix_ingestion_job_material
+    ON public.ingestion_job (material_id);
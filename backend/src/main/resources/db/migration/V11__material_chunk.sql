@@ -0,0 +1,19 @@
+-- V11__material_chunk.sql
+-- Per-chunk manifest for course materials: which content hash sits at which chunk index.
+-- Lets a re-upload re-embed only changed chunks, and lets identical chunks in other
+-- materials reuse the stored vector instead of calling the embedding model again.
+
+CREATE TABLE IF NOT EXISTS public.material_chunk (
+    material_id   INT       NOT NULL,
+    chunk_index   INT       NOT NULL,
+    content_hash  CHAR(64)  NOT NULL,   -- SHA-256 hex of the chunk text
+
+    PRIMARY KEY (material_id, chunk_index),
+
+    CONSTRAINT fk_material_chunk_material
+        FOREIGN KEY (material_id) REFERENCES public.course_material(id) ON DELETE CASCADE
+);
+
+-- Cross-material reuse looks chunks up by hash
+CREATE INDEX IF NOT EXISTS ix_material_chunk_hash
+    ON public.material_chunk (content_hash);
@@ -0,0 +1,14 @@
+-- V12__embedding_cache.sql
+-- Persistent tier of the embedding cache: one vector per (model, text hash).
+-- Vectors are stored as little-endian float32 or float16 blobs (see VectorCodec).
+
+CREATE TABLE IF NOT EXISTS public.embedding_cache (
+    model       VARCHAR(100) NOT NULL,
+    text_hash   CHAR(64)     NOT NULL,   -- SHA-256 hex of the embedded text
+    encoding    VARCHAR(8)   NOT NULL,   -- 'f32' | 'f16'
+    dims        INT          NOT NULL,
+    vector      BYTEA        NOT NULL,
+    created_at  TIMESTAMP    NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (model, text_hash)
+);
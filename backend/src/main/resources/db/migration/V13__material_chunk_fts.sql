@@ -0,0 +1,17 @@
+-- V13__material_chunk_fts.sql
+-- Lexical side of hybrid retrieval: keep chunk text next to its hash and index it for full-text search.
+-- Filled by ingestion; chunks ingested before this migration only appear in vector search until re-uploaded.
+
+ALTER TABLE public.material_chunk
+    ADD COLUMN IF NOT EXISTS class_id INT,
+    ADD COLUMN IF NOT EXISTS content  TEXT;
+
+ALTER TABLE public.material_chunk
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('english', coalesce(content, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS ix_material_chunk_tsv
+    ON public.material_chunk USING GIN (content_tsv);
+
+CREATE INDEX IF NOT EXISTS ix_material_chunk_class
+    ON public.material_chunk (class_id);
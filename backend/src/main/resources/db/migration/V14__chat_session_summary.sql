@@ -0,0 +1,11 @@
+-- V14__chat_session_summary.sql
+-- Rolling summary of a chat session, folded forward as older turns leave the recent-turns window
+-- (see ConversationMemory). summary_message_id is the newest message already folded in.
+
+ALTER TABLE chat_session
+    ADD COLUMN IF NOT EXISTS summary            TEXT,
+    ADD COLUMN IF NOT EXISTS summary_message_id INT;
+
+-- Recent-turns lookup for a session, newest first
+CREATE INDEX IF NOT EXISTS idx_chat_message_session_message
+    ON chat_message (session_id, message_id);
@@ -0,0 +1,9 @@
+-- V15__chat_message_history_indexes.sql
+-- Keyset pagination and export of chat history walk (timestamp, message_id) within a student's class
+-- history or within a session. message_id is the tiebreaker for equal timestamps, so it is the last key.
+
+CREATE INDEX IF NOT EXISTS idx_chat_message_student_class_ts
+    ON chat_message (student_id, class_id, timestamp, message_id);
+
+CREATE INDEX IF NOT EXISTS idx_chat_message_session_ts
+    ON chat_message (session_id, timestamp, message_id);
@@ -0,0 +1,7 @@
+-- V16__chat_session_lifecycle.sql
+-- One open session per (student, class) conversation; closed (end_time set) after it goes idle.
+-- The legacy shared session has no student and is left out of the constraint.
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_chat_session_open
+    ON chat_session (student_id, class_id)
+    WHERE end_time IS NULL AND student_id IS NOT NULL;
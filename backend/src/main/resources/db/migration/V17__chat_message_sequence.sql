@@ -0,0 +1,11 @@
+-- V17__chat_message_sequence.sql
+-- chat_message ids move from an identity column to a sequence Hibernate allocates in blocks of 50
+-- (pooled optimizer): ids are known before the insert, so the write-behind buffer can batch them.
+-- INCREMENT BY must match allocationSize on ChatMessage.messageId.
+
+ALTER TABLE chat_message ALTER COLUMN message_id DROP IDENTITY IF EXISTS;
+
+CREATE SEQUENCE IF NOT EXISTS chat_message_seq INCREMENT BY 50;
+
+-- The pooled optimizer hands out (value - 49 .. value], so the first block must start past existing ids
+SELECT setval('chat_message_seq', COALESCE(MAX(message_id), 0) + 50, false) FROM chat_message;
@@ -0,0 +1,5 @@
+-- V18__student_roster_lookup.sql
+-- Roster imports resolve students by (case-insensitive) email or school id in one query.
+
+CREATE INDEX IF NOT EXISTS idx_student_email_lower ON student (lower(email));
+CREATE INDEX IF NOT EXISTS idx_student_school_id   ON student (school_id);
@@ -0,0 +1,11 @@
+-- V19__chat_session_summary_watermark.sql
+-- The summary watermark is a (timestamp, message_id) keyset position, the same order V15 pages by,
+-- so a message id alone no longer decides which turns have been folded.
+
+ALTER TABLE chat_session ADD COLUMN IF NOT EXISTS summary_timestamp TIMESTAMP;
+
+UPDATE chat_session s
+   SET summary_timestamp = m.timestamp
+  FROM chat_message m
+ WHERE m.message_id = s.summary_message_id
+   AND s.summary_timestamp IS NULL;
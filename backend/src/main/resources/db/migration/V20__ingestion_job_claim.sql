@@ -0,0 +1,24 @@
+-- V20__ingestion_job_claim.sql
+-- A job is claimed atomically by one worker (worker_id), and a material has at most one RUNNING job.
+-- cancel_reason asks an unfinished job to stop before its next write: SUPERSEDED | DELETED.
+
+ALTER TABLE public.ingestion_job
+    ADD COLUMN IF NOT EXISTS worker_id     VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS cancel_reason VARCHAR(20);
+
+-- Unfinished jobs with a newer one for the same material could have run side by side: keep the newest
+UPDATE public.ingestion_job j
+   SET cancel_reason = 'SUPERSEDED'
+ WHERE j.status IN ('QUEUED', 'RUNNING')
+   AND EXISTS (SELECT 1
+                 FROM public.ingestion_job n
+                WHERE n.material_id = j.material_id
+                  AND n.job_id > j.job_id
+                  AND n.status IN ('QUEUED', 'RUNNING'));
+
+-- RUNNING rows here belong to a stopped process; put them back in the queue so the index below holds
+UPDATE public.ingestion_job SET status = 'QUEUED' WHERE status = 'RUNNING';
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_ingestion_job_material_running
+    ON public.ingestion_job (material_id)
+    WHERE status = 'RUNNING';
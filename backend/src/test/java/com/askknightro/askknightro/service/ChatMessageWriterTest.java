@@ -0,0 +1,217 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ChatMessageWriterTest {
+
+    private FakeDb db;
+    private SimpleMeterRegistry registry;
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        db = new FakeDb();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) writer.shutdown();
+    }
+
+    private ChatMessageWriter writer(int capacity, int batchSize, Duration flushInterval) {
+        writer = new ChatMessageWriter(db.entityManager, db.jdbc, db.transactions, registry,
+                capacity, batchSize, flushInterval, Duration.ofMillis(10));
+        return writer;
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.builder()
+                .sessionId(1)
+                .studentId(2)
+                .classId(3)
+                .senderType("STUDENT")
+                .content(content)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private double messages(String result) {
+        return registry.get("askknightro.chat.write-behind.messages").tag("result", result).counter().count();
+    }
+
+    @Test
+    void idsAreAssignedBeforeTheMessageIsQueued() {
+        ChatMessageWriter writer = writer(100, 100, Duration.ofMillis(100));
+        ChatMessage first = message("a");
+        writer.write(List.of(first));
+        List<ChatMessage> more = new ArrayList<>();
+        for (int i = 0; i < ChatMessageWriter.ID_BLOCK; i++) more.add(message("b" + i));
+        writer.write(more);
+
+        // Known to the caller straight away, one sequence call per block of ids
+        assertThat(first.getMessageId()).isEqualTo(1);
+        assertThat(more).extracting(ChatMessage::getMessageId)
+                .startsWith(2, 3)
+                .endsWith(ChatMessageWriter.ID_BLOCK + 1);
+        assertThat(db.nextvalCalls).isEqualTo(2);
+    }
+
+    @Test
+    void shutdownWritesEverythingStillQueued() {
+        ChatMessageWriter writer = writer(100, 1000, Duration.ofMillis(200));
+        writer.write(List.of(message("q1"), message("a1")));
+        writer.write(List.of(message("q2"), message("a2")));
+        writer.write(List.of(message("q3"), message("a3")));
+
+        writer.shutdown();
+
+        assertThat(db.committedContents()).containsExactlyInAnyOrder("q1", "a1", "q2", "a2", "q3", "a3");
+        assertThat(messages("written")).isEqualTo(6);
+
+        // Once stopped, writes go straight to the database
+        writer.write(List.of(message("late")));
+        assertThat(db.committedContents()).contains("late");
+    }
+
+    @Test
+    void fullQueueFallsBackToSynchronousWrite() throws Exception {
+        // The flusher is stuck on the first message; the second fills the one-slot queue
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        db.onPersist = m -> {
+            if (m.getContent().equals("blocked")) {
+                flushing.countDown();
+                await(release);
+            }
+        };
+        ChatMessageWriter writer = writer(1, 1, Duration.ofMillis(50));
+        writer.write(List.of(message("blocked")));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.write(List.of(message("queued")));
+
+        writer.write(List.of(message("overflow")));
+
+        assertThat(db.committedContents()).containsExactly("overflow");
+        assertThat(registry.get("askknightro.chat.write-behind.overflow").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        writer.shutdown();
+        assertThat(db.committedContents()).containsExactly("overflow", "blocked", "queued");
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRowKeepingIds() {
+        db.onPersist = m -> {
+            if (m.getContent().equals("bad")) throw new PersistenceException("value too long");
+        };
+        ChatMessageWriter writer = writer(100, 10, Duration.ofMillis(50));
+        List<ChatMessage> batch = List.of(message("good1"), message("bad"), message("good2"));
+        writer.write(batch);
+
+        writer.shutdown();
+
+        assertThat(db.committed).extracting(ChatMessage::getContent).containsExactly("good1", "good2");
+        assertThat(db.committed).extracting(ChatMessage::getMessageId).containsExactly(1, 3);
+        assertThat(messages("written")).isEqualTo(2);
+        assertThat(messages("failed")).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stands in for Postgres behind the writer: chat_message_seq, and a table that only keeps rows
+     * persisted in a transaction that commits. Transactions are per thread, like the real ones.
+     */
+    private static final class FakeDb {
+
+        final List<ChatMessage> committed = Collections.synchronizedList(new ArrayList<>());
+        final ThreadLocal<List<ChatMessage>> pending = ThreadLocal.withInitial(ArrayList::new);
+        volatile Consumer<ChatMessage> onPersist = m -> {};
+        int sequence;
+        int nextvalCalls;
+
+        final EntityManager entityManager = mock(EntityManager.class);
+
+        final JdbcTemplate jdbc = new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T queryForObject(String sql, Class<T> requiredType) {
+                assertThat(sql).contains("nextval('chat_message_seq')");
+                synchronized (FakeDb.this) {
+                    nextvalCalls++;
+                    sequence += ChatMessageWriter.ID_BLOCK;
+                    return (T) Integer.valueOf(sequence);
+                }
+            }
+        };
+
+        final AbstractPlatformTransactionManager transactions = new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+                pending.get().clear();
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+                committed.addAll(pending.get());
+                pending.get().clear();
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+                pending.get().clear();
+            }
+        };
+
+        FakeDb() {
+            doAnswer(inv -> {
+                ChatMessage m = inv.getArgument(0);
+                onPersist.accept(m);
+                pending.get().add(m);
+                return null;
+            }).when(entityManager).persist(any());
+        }
+
+        List<String> committedContents() {
+            synchronized (committed) {
+                return committed.stream().map(ChatMessage::getContent).toList();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.askknightro.askknightro.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextPackerTest {
+
+    private static final String[] WORDS = {
+            "matrix", "vector", "eigenvalue", "basis", "span", "kernel", "rank", "determinant", "inverse",
+            "transpose", "orthogonal", "projection", "subspace", "dimension", "linear", "map", "scalar",
+            "column", "row", "pivot", "echelon", "null", "space", "trace", "norm", "inner", "product"};
+
+    private static ContextPacker packer(int tokenBudget, int maxChunkTokens) {
+        return new ContextPacker("gpt-4o-mini", tokenBudget, maxChunkTokens, 0.95, 0.7);
+    }
+
+    private static Document chunk(int materialId, int chunkIndex, String text) {
+        return Document.builder()
+                .id(materialId + "-" + chunkIndex)
+                .text(text)
+                .metadata(Map.of("material_id", materialId, "chunk_index", chunkIndex, "name", "notes-" + materialId + ".pdf"))
+                .build();
+    }
+
+    // Sentences of random course vocabulary, distinct enough per seed not to count as duplicates
+    private static String sentences(long seed, int count, int wordsPerSentence) {
+        Random random = new Random(seed);
+        return IntStream.range(0, count)
+                .mapToObj(i -> {
+                    String s = IntStream.range(0, wordsPerSentence)
+                            .mapToObj(w -> WORDS[random.nextInt(WORDS.length)] + random.nextInt(1000))
+                            .collect(Collectors.joining(" "));
+                    return Character.toUpperCase(s.charAt(0)) + s.substring(1) + ".";
+                })
+                .collect(Collectors.joining(" "));
+    }
+
+    @Test
+    void dropsNearDuplicateChunks() {
+        String text = sentences(1, 3, 12);
+        Document first = chunk(1, 0, text);
+        Document copy = chunk(2, 5, text);   // same text uploaded again as another material
+        Document other = chunk(3, 0, sentences(2, 3, 12));
+
+        ContextPacker.Packed packed = packer(2000, 400).pack(List.of(first, copy, other));
+
+        assertThat(packed.chunks()).containsExactly(first, other);
+        assertThat(packed.text()).doesNotContain("notes-2.pdf");
+    }
+
+    @Test
+    void dropsChunksWithNearIdenticalEmbeddings() {
+        Document first = chunk(1, 0, sentences(3, 3, 12));
+        Document second = chunk(2, 0, sentences(4, 3, 12));
+        first.getMetadata().put(ChunkStore.VECTOR, new float[]{0.6f, 0.8f, 0f});
+        second.getMetadata().put(ChunkStore.VECTOR, new float[]{0.6f, 0.8f, 0.01f});
+
+        ContextPacker.Packed packed = packer(2000, 400).pack(List.of(first, second));
+
+        assertThat(packed.chunks()).containsExactly(first);
+    }
+
+    @Test
+    void trimsLongChunkAtSentenceBoundary() {
+        String text = sentences(5, 20, 10);
+        ContextPacker packer = packer(2000, 80);
+
+        ContextPacker.Packed packed = packer.pack(List.of(chunk(1, 0, text)));
+
+        String body = packed.text().substring(packed.text().indexOf("]: ") + 3);
+        assertThat(text).startsWith(body);
+        assertThat(body).endsWith(".");
+        assertThat(packer.count(body)).isLessThanOrEqualTo(80);
+    }
+
+    @Test
+    void cutsOverLongSentenceAtAWord() {
+        String text = sentences(6, 1, 300);   // one sentence, far over the chunk limit
+        ContextPacker packer = packer(2000, 60);
+
+        ContextPacker.Packed packed = packer.pack(List.of(chunk(1, 0, text)));
+
+        String body = packed.text().substring(packed.text().indexOf("]: ") + 3);
+        assertThat(body).endsWith("…");
+        String kept = body.substring(0, body.length() - 1);
+        assertThat(text).startsWith(kept);
+        assertThat(text.charAt(kept.length())).isEqualTo(' ');   // cut between words, not inside one
+        assertThat(packer.count(kept)).isLessThanOrEqualTo(60);
+    }
+
+    @Test
+    void mergesAdjacentChunksOfAMaterialIntoOneBlock() {
+        Document third = chunk(7, 3, sentences(7, 2, 10));
+        Document fourth = chunk(7, 4, sentences(8, 2, 10));
+        Document ninth = chunk(7, 9, sentences(9, 2, 10));
+        Document elsewhere = chunk(8, 0, sentences(10, 2, 10));
+
+        // Fused order puts chunk 4 ahead of chunk 3; the block still reads in document order
+        String text = packer(2000, 400).pack(List.of(fourth, elsewhere, third, ninth)).text();
+
+        assertThat(text.split("Source \\[7 \\| ", -1)).hasSize(3);   // run 3-4, then 9 on its own
+        assertThat(text.indexOf(third.getText())).isLessThan(text.indexOf(fourth.getText()));
+        assertThat(text.substring(text.indexOf(third.getText()) + third.getText().length(), text.indexOf(fourth.getText())))
+                .isEqualTo("\n");
+        assertThat(text.indexOf(fourth.getText())).isLessThan(text.indexOf("Source [8 | "));
+        assertThat(text.indexOf("Source [8 | ")).isLessThan(text.indexOf(ninth.getText()));
+    }
+
+    @Test
+    void neverExceedsTheTokenBudget() {
+        for (int budget : new int[]{100, 250, 500, 1000, 2000}) {
+            ContextPacker packer = packer(budget, 400);
+            for (long seed = 0; seed < 10; seed++) {
+                List<Document> hits = new ArrayList<>();
+                Random random = new Random(seed);
+                for (int i = 0; i < 30; i++) {
+                    // Few materials over consecutive indexes, so both merged and separate blocks occur
+                    hits.add(chunk(random.nextInt(3), i,
+                            sentences(seed * 100 + i, 2 + random.nextInt(6), 6 + random.nextInt(20))));
+                }
+
+                ContextPacker.Packed packed = packer.pack(hits);
+
+                assertThat(packed.tokens()).as("budget %d, seed %d", budget, seed)
+                        .isEqualTo(packer.count(packed.text()))
+                        .isLessThanOrEqualTo(budget);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.StudentDto;
+import com.askknightro.askknightro.entity.Course;
+import com.askknightro.askknightro.entity.Enrollment;
+import com.askknightro.askknightro.entity.Student;
+import com.askknightro.askknightro.repository.CourseManagementRepository;
+import com.askknightro.askknightro.repository.EnrollmentRepository;
+import com.askknightro.askknightro.repository.StudentRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Statements Hibernate actually prepares for a class roster, against Postgres with the Flyway schema.
+// The per-student path is measured too, so the counter is shown to see every round trip.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Import(EnrollmentService.class)
+class EnrollmentRosterStatementCountTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    StudentService studentService;
+
+    @MockitoBean
+    CourseCatalog courseCatalog;
+
+    @Autowired
+    EnrollmentService enrollmentService;
+
+    @Autowired
+    EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @Autowired
+    CourseManagementRepository courseManagementRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @ParameterizedTest
+    @ValueSource(ints = {40, 400})
+    void rosterIsOneStatement(int size) {
+        Integer classId = seedClass(size);
+        Statistics stats = freshStatistics();
+
+        List<StudentDto> roster = enrollmentService.readStudentList(classId);
+
+        assertThat(roster).hasSize(size);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {40, 400})
+    void perStudentReadsAreOnePlusN(int size) {
+        Integer classId = seedClass(size);
+        Statistics stats = freshStatistics();
+
+        // The shape of the old readStudentList: enrollment rows, then one lookup per student
+        List<Student> roster = new ArrayList<>();
+        for (Enrollment e : enrollmentRepository.findAllByClassIdNative(classId)) {
+            roster.add(studentRepository.findById(e.getStudent().getStudentId()).orElseThrow());
+        }
+
+        assertThat(roster).hasSize(size);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1L + size);
+    }
+
+    private Integer seedClass(int size) {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        Course course = courseManagementRepository.save(Course.builder()
+                .enrollmentCode("T-" + tag)
+                .courseName("Roster " + size)
+                .semester("Fall 2026")
+                .build());
+
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            students.add(Student.builder()
+                    .name("Student " + i)
+                    .email("s" + i + "-" + tag + "@example.edu")
+                    .yearStanding("Junior")
+                    .major("Computer Science")
+                    .gradDate(LocalDate.of(2028, 5, 1))
+                    .schoolId(tag + "-" + i)
+                    .universityCollege("Engineering")
+                    .build());
+        }
+        studentRepository.saveAll(students);
+
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (Student s : students) {
+            enrollments.add(Enrollment.builder().student(s).courseClass(course).build());
+        }
+        enrollmentRepository.saveAll(enrollments);
+
+        // Written out and detached, so nothing below is answered from the persistence context
+        entityManager.flush();
+        entityManager.clear();
+        return course.getClassId();
+    }
+
+    private Statistics freshStatistics() {
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        return stats;
+    }
+}
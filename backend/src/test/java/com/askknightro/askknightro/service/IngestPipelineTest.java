@@ -0,0 +1,159 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.entity.MaterialChunk;
+import com.askknightro.askknightro.repository.MaterialChunkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestPipelineTest {
+
+    private static final int CLASS_ID = 7;
+    private static final int MATERIAL_ID = 3;
+
+    private EmbeddingModel embeddingModel;
+    private ChunkStore chunkStore;
+    private MaterialChunkRepository chunkRepository;
+    private IngestPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyList())).thenAnswer(inv -> {
+            List<String> texts = inv.getArgument(0);
+            return texts.stream().map(t -> new float[] {t.length()}).toList();
+        });
+        chunkStore = mock(ChunkStore.class);
+        chunkRepository = mock(MaterialChunkRepository.class);
+        when(chunkRepository.findByContentHashIn(anyCollection())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) pipeline.shutdown();
+    }
+
+    private IngestPipeline pipeline(int concurrency, int maxInFlight, int maxAttempts) {
+        pipeline = new IngestPipeline(embeddingModel, chunkStore, chunkRepository,
+                new RagMetrics(new SimpleMeterRegistry(), 100),
+                concurrency, concurrency, maxInFlight, maxAttempts, Duration.ofMillis(1), false);
+        return pipeline;
+    }
+
+    // One single-chunk batch per index, the chunk's text naming its batch
+    private static Iterator<List<Document>> batches(int count) {
+        List<List<Document>> batches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batches.add(List.of(Document.builder()
+                    .id(MaterialChunk.docId(MATERIAL_ID, i))
+                    .text("batch " + i)
+                    .metadata(Map.of("classId", CLASS_ID, "material_id", MATERIAL_ID,
+                            "chunk_index", i, "content_hash", "hash-" + i))
+                    .build()));
+        }
+        return batches.iterator();
+    }
+
+    private static int indexOf(List<Document> docs) {
+        return ((Number) docs.get(0).getMetadata().get("chunk_index")).intValue();
+    }
+
+    @Test
+    void progressOnlyCountsBatchesWrittenFromTheStart() throws Exception {
+        // Batch 0 is held until batches 1 and 2 are written, so they finish first
+        CountDownLatch laterWritten = new CountDownLatch(2);
+        AtomicBoolean firstWritten = new AtomicBoolean();
+        doAnswer(inv -> {
+            if (indexOf(inv.getArgument(0)) == 0) {
+                assertThat(laterWritten.await(5, TimeUnit.SECONDS)).isTrue();
+                firstWritten.set(true);
+            }
+            return null;
+        }).when(chunkStore).upsert(anyList(), anyList());
+        when(chunkRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<MaterialChunk> rows = inv.getArgument(0);
+            if (rows.get(0).getChunkIndex() > 0) laterWritten.countDown();
+            return rows;
+        });
+
+        List<Integer> reported = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> afterFirst = Collections.synchronizedList(new ArrayList<>());
+        IngestPipeline.Stats stats = pipeline(3, 3, 1).run(batches(3), () -> false, done -> {
+            reported.add(done);
+            afterFirst.add(firstWritten.get());
+        });
+
+        assertThat(stats).isEqualTo(new IngestPipeline.Stats(0, 0, 3));
+        assertThat(afterFirst).containsOnly(true);   // nothing is reported while batch 0 is still pending
+        assertThat(reported).isSorted().doesNotHaveDuplicates().endsWith(3);
+    }
+
+    @Test
+    void transientFailureIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("milvus unavailable");
+            return null;
+        }).when(chunkStore).upsert(anyList(), anyList());
+
+        List<Integer> reported = new ArrayList<>();
+        pipeline(1, 1, 3).run(batches(1), () -> false, reported::add);
+
+        assertThat(calls).hasValue(2);
+        assertThat(reported).containsExactly(1);
+    }
+
+    @Test
+    void exhaustedRetriesFailTheRunWithoutRecordingProgress() {
+        IllegalStateException down = new IllegalStateException("milvus unavailable");
+        doAnswer(inv -> { throw down; }).when(chunkStore).upsert(anyList(), anyList());
+
+        List<Integer> reported = new ArrayList<>();
+        assertThatThrownBy(() -> pipeline(1, 1, 3).run(batches(2), () -> false, reported::add))
+                .isInstanceOf(RuntimeException.class)
+                .hasCause(down);
+
+        verify(chunkStore, times(3)).upsert(anyList(), anyList());   // first batch only: the run stops there
+        verify(chunkRepository, never()).saveAll(any());
+        assertThat(reported).isEmpty();
+    }
+
+    @Test
+    void cancellationStopsFurtherWrites() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        doAnswer(inv -> {
+            cancelled.set(true);   // cancelled while the first batch is being written
+            return null;
+        }).when(chunkStore).upsert(anyList(), anyList());
+
+        List<Integer> reported = new ArrayList<>();
+        assertThatThrownBy(() -> pipeline(1, 1, 1).run(batches(4), cancelled::get, reported::add))
+                .isInstanceOf(CancellationException.class);
+
+        verify(chunkStore, times(1)).upsert(anyList(), anyList());
+        assertThat(reported).containsExactly(1);
+    }
+}
@@ -0,0 +1,231 @@
+package com.askknightro.askknightro.service;
+
+import com.askknightro.askknightro.dto.CourseDto;
+import com.askknightro.askknightro.dto.RosterEntryDto;
+import com.askknightro.askknightro.dto.RosterImportResultDto;
+import com.askknightro.askknightro.dto.RosterImportResultDto.Row;
+import com.askknightro.askknightro.dto.RosterImportResultDto.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RosterImportServiceTest {
+
+    private static final int CLASS_ID = 42;
+
+    private FakeJdbc jdbc;
+    private RosterImportService service;
+
+    @BeforeEach
+    void setUp() {
+        CourseCatalog courseCatalog = mock(CourseCatalog.class);
+        when(courseCatalog.find(CLASS_ID)).thenReturn(Optional.of(CourseDto.builder().classId(CLASS_ID).build()));
+        jdbc = new FakeJdbc();
+        service = new RosterImportService(courseCatalog, jdbc);
+    }
+
+    // --- parseCsv
+
+    @Test
+    void headerRowPicksColumnsInAnyOrder() {
+        List<RosterEntryDto> entries = service.parseCsv("""
+                "E-mail Address", Name, School ID, Student_Id
+                alice@ucf.edu, Alice, K100, 7
+                bob@ucf.edu, Bob, K200,
+                , Carol, K300,
+                """);
+
+        assertThat(entries).containsExactly(
+                new RosterEntryDto(7, "alice@ucf.edu", "K100"),
+                new RosterEntryDto(null, "bob@ucf.edu", "K200"),
+                new RosterEntryDto(null, null, "K300"));
+    }
+
+    @Test
+    void withoutHeaderFirstCellIsEmailOrSchoolId() {
+        List<RosterEntryDto> entries = service.parseCsv("""
+                alice@ucf.edu,Alice
+
+                K200,Bob
+                """);
+
+        assertThat(entries).containsExactly(
+                RosterEntryDto.builder().email("alice@ucf.edu").build(),
+                RosterEntryDto.builder().schoolId("K200").build());
+    }
+
+    @Test
+    void unreadableStudentIdIsInvalidNotMatchedByEmail() {
+        jdbc.student(1, "alice@ucf.edu", "K100");
+
+        List<RosterEntryDto> entries = service.parseCsv("""
+                studentId,email
+                12x,alice@ucf.edu
+                """);
+        RosterImportResultDto result = service.importRoster(CLASS_ID, entries);
+
+        assertThat(entries).containsExactly(new RosterEntryDto());
+        assertThat(result.getRows()).extracting(Row::getStatus).containsExactly(Status.INVALID);
+        assertThat(result.getInvalid()).isEqualTo(1);
+        assertThat(jdbc.enrolled).isEmpty();
+    }
+
+    // --- importRoster
+
+    @Test
+    void repeatedStudentIsDuplicateAndExistingEnrollmentIsAlreadyEnrolled() {
+        jdbc.student(1, "alice@ucf.edu", "K100");
+        jdbc.student(2, "bob@ucf.edu", "K200");
+        jdbc.enrolled.add(1);
+
+        RosterImportResultDto result = service.importRoster(CLASS_ID, List.of(
+                RosterEntryDto.builder().studentId(1).build(),
+                RosterEntryDto.builder().studentId(2).build(),
+                RosterEntryDto.builder().email("bob@ucf.edu").build(),   // Bob again, by another column
+                RosterEntryDto.builder().schoolId("K999").build(),
+                new RosterEntryDto()));
+
+        assertThat(result.getRows()).extracting(Row::getLine, Row::getStudentId, Row::getStatus).containsExactly(
+                tuple(1, 1, Status.ALREADY_ENROLLED),
+                tuple(2, 2, Status.ENROLLED),
+                tuple(3, 2, Status.DUPLICATE),
+                tuple(4, null, Status.NOT_FOUND),
+                tuple(5, null, Status.INVALID));
+        assertThat(result.getEnrolled()).isEqualTo(1);
+        assertThat(result.getAlreadyEnrolled()).isEqualTo(2);
+        assertThat(result.getNotFound()).isEqualTo(1);
+        assertThat(result.getInvalid()).isEqualTo(1);
+        assertThat(jdbc.insertedBatches).containsExactly(List.of(1, 2));   // Bob is sent once
+    }
+
+    @Test
+    void emailMatchesIgnoringCaseAndSurroundingSpace() {
+        jdbc.student(5, "Alice.Smith@UCF.edu", "K500");
+
+        RosterImportResultDto result = service.importRoster(CLASS_ID, List.of(
+                RosterEntryDto.builder().email("  alice.smith@ucf.EDU ").build()));
+
+        Row row = result.getRows().get(0);
+        assertThat(row.getStatus()).isEqualTo(Status.ENROLLED);
+        assertThat(row.getStudentId()).isEqualTo(5);
+        assertThat(row.getKey()).isEqualTo("alice.smith@ucf.EDU");
+        assertThat(jdbc.enrolled).containsExactly(5);
+    }
+
+    @Test
+    void rosterIsResolvedWithOneQuery() {
+        for (int i = 1; i <= 1200; i++) jdbc.student(i, "s" + i + "@ucf.edu", "K" + i);
+
+        List<RosterEntryDto> roster = new ArrayList<>();
+        for (int i = 1; i <= 1200; i++) roster.add(RosterEntryDto.builder().email("S" + i + "@ucf.edu").build());
+        RosterImportResultDto result = service.importRoster(CLASS_ID, roster);
+
+        assertThat(result.getEnrolled()).isEqualTo(1200);
+        assertThat(jdbc.resolveQueries).isEqualTo(1);
+        assertThat(jdbc.insertedBatches).extracting(List::size).containsExactly(500, 500, 200);
+    }
+
+    /**
+     * Stands in for Postgres behind the two statements importRoster issues. The SQL isn't parsed:
+     * the arrays it binds are read back and answered from an in-memory student table and roster.
+     */
+    private static final class FakeJdbc extends JdbcTemplate {
+
+        private record StudentRow(int id, String email, String schoolId) {}
+
+        final SortedMap<Integer, StudentRow> students = new TreeMap<>();
+        final Set<Integer> enrolled = new LinkedHashSet<>();
+        final List<List<Integer>> insertedBatches = new ArrayList<>();
+        int resolveQueries;
+
+        void student(int id, String email, String schoolId) {
+            students.put(id, new StudentRow(id, email, schoolId));
+        }
+
+        // SELECT ... WHERE student_id = ANY(?) OR lower(email) = ANY(?) OR school_id = ANY(?)
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            try {
+                Object[][] arrays = bind(psc, 3);
+                Set<Object> ids = Set.of(arrays[0]);
+                Set<Object> emails = Set.of(arrays[1]);
+                Set<Object> schoolIds = Set.of(arrays[2]);
+                resolveQueries++;
+                for (StudentRow s : students.values()) {
+                    String email = s.email() == null ? null : s.email().toLowerCase(Locale.ROOT);
+                    if (!ids.contains(s.id()) && !emails.contains(email) && !schoolIds.contains(s.schoolId())) continue;
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getInt("student_id")).thenReturn(s.id());
+                    when(rs.getString("email")).thenReturn(email);
+                    when(rs.getString("school_id")).thenReturn(s.schoolId());
+                    rch.processRow(rs);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // INSERT ... SELECT unnest(?) ON CONFLICT DO NOTHING RETURNING student_id
+        @Override
+        public <T> List<T> query(PreparedStatementCreator psc, RowMapper<T> rowMapper) {
+            try {
+                Object[][] arrays = bind(psc, 1);
+                List<Integer> batch = new ArrayList<>();
+                for (Object id : arrays[0]) batch.add((Integer) id);
+                insertedBatches.add(batch);
+
+                List<T> returned = new ArrayList<>();
+                for (Integer id : batch) {
+                    if (!enrolled.add(id)) continue;
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getInt(1)).thenReturn(id);
+                    returned.add(rowMapper.mapRow(rs, returned.size()));
+                }
+                return returned;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // The array parameters, in order, that the statement creator bound
+        private static Object[][] bind(PreparedStatementCreator psc, int count) throws SQLException {
+            Connection con = mock(Connection.class);
+            PreparedStatement ps = mock(PreparedStatement.class);
+            when(con.prepareStatement(anyString())).thenReturn(ps);
+            when(con.createArrayOf(anyString(), any(Object[].class))).thenAnswer(inv -> {
+                Array array = mock(Array.class);
+                when(array.getArray()).thenReturn(inv.getArgument(1));
+                return array;
+            });
+
+            psc.createPreparedStatement(con);
+
+            ArgumentCaptor<Array> bound = ArgumentCaptor.forClass(Array.class);
+            verify(ps, times(count)).setArray(anyInt(), bound.capture());
+            Object[][] arrays = new Object[count][];
+            for (int i = 0; i < count; i++) arrays[i] = (Object[]) bound.getAllValues().get(i).getArray();
+            return arrays;
+        }
+    }
+}
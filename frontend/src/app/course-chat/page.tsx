@@ -159,7 +159,10 @@ function CourseChatContent() {
             }
           );
           if (messagesRes.ok) {
-            const chatHistory: ChatMessageDto[] = await messagesRes.json();
+            // Latest page of history, oldest first
+            const page: { messages: ChatMessageDto[]; nextCursor?: string | null } =
+              await messagesRes.json();
+            const chatHistory = page.messages;
             if (chatHistory.length > 0) {
               const loadedMessages: Message[] = chatHistory.map((msg, idx) => ({
                 id: msg.messageId || idx,
@@ -216,34 +219,6 @@ function CourseChatContent() {
     adjustTextareaHeight();
   }, [inputMessage]);
 
-  const saveMessageToDb = async (content: string, senderType: "STUDENT" | "AI") => {
-    if (!studentId || !courseId) {
-      console.warn("Cannot save message: missing studentId or courseId");
-      return;
-    }
-
-    try {
-      const response = await fetch(`http://localhost:8080/api/messages`, {
-        method: "POST",
-        headers: getAuthHeaders(),
-        body: JSON.stringify({
-          studentId,
-          classId: courseId,
-          senderType,
-          content,
-        }),
-      });
-
-      if (!response.ok) {
-        console.error("Failed to save message:", response.statusText);
-      } else {
-        console.log(`✅ ${senderType} message saved to database`);
-      }
-    } catch (err) {
-      console.error("Error saving message:", err);
-    }
-  };
-
   const handleSendMessage = async (e: React.FormEvent) => {
     e.preventDefault();
     if (!inputMessage.trim() || isTyping) return;
@@ -258,15 +233,15 @@ function CourseChatContent() {
     setInputMessage("");
     setIsTyping(true);
 
-    // Save user message to database
-    await saveMessageToDb(userMessage.content, "STUDENT");
-
     try {
       const response = await fetch("http://localhost:8080/api/ask", {
         method: "POST",
         headers: getAuthHeaders(),
         body: JSON.stringify({
           classId: courseId,
+          studentId,
+          // The backend stores the question and answer in the student's session
+          saveHistory: Boolean(studentId),
           question: userMessage.content,
         }),
       });
@@ -285,9 +260,6 @@ function CourseChatContent() {
       };
 
       setMessages((prev) => [...prev, aiResponse]);
-
-      // Save AI message to database
-      await saveMessageToDb(aiResponse.content, "AI");
     } catch (error) {
       console.error("Error fetching AI response:", error);
       const errorMessage: Message = {
@@ -21,6 +21,20 @@ interface CourseMaterial {
   size?: string;
 }
 
+// POST /api/materials and PATCH with a new file return 202 with the ingestion job
+interface IngestionJob {
+  jobId: number;
+  materialId: number;
+  classId: number;
+  kind: "CREATE" | "REPLACE";
+  status: "QUEUED" | "RUNNING" | "COMPLETED" | "FAILED" | "CANCELLED";
+  chunksDone: number | null;
+  chunksTotal: number | null;
+  error: string | null;
+}
+
+const JOB_POLL_MS = 1500;
+
 const CourseInfoContent: React.FC = () => {
   const searchParams = useSearchParams();
   const [isEditing, setIsEditing] = useState(false);
@@ -134,6 +148,52 @@ const CourseInfoContent: React.FC = () => {
   }, [searchParams]);
 
   const [uploadedFiles, setUploadedFiles] = useState<CourseMaterial[]>([]);
+  // Ingestion jobs still running, by material id
+  const [ingestingJobs, setIngestingJobs] = useState<Record<number, IngestionJob>>({});
+
+  // Polls an ingestion job until it finishes, then reloads the list so the row shows the final state
+  const trackIngestionJob = async (job: IngestionJob) => {
+    setIngestingJobs((prev) => ({ ...prev, [job.materialId]: job }));
+    let current = job;
+    try {
+      while (current.status === "QUEUED" || current.status === "RUNNING") {
+        await new Promise((resolve) => setTimeout(resolve, JOB_POLL_MS));
+        const response = await fetch(`${API_BASE}/api/materials/jobs/${job.jobId}`, {
+          method: "GET",
+          headers: getAuthHeaders(),
+        });
+        if (!response.ok) {
+          throw new Error(`Failed to check upload progress: ${response.statusText}`);
+        }
+        current = await response.json();
+        const latest = current;
+        setIngestingJobs((prev) => ({ ...prev, [job.materialId]: latest }));
+      }
+      if (current.status === "FAILED") {
+        setError(`Processing failed: ${current.error ?? "Unknown error"}`);
+      }
+    } catch (err) {
+      console.error("Failed to poll ingestion job:", err);
+      setError(
+        `Failed to check upload progress: ${
+          err instanceof Error ? err.message : "Unknown error"
+        }`
+      );
+    } finally {
+      setIngestingJobs((prev) => {
+        const next = { ...prev };
+        delete next[job.materialId];
+        return next;
+      });
+      await loadCourseMaterials(job.classId);
+    }
+  };
+
+  const describeJob = (job: IngestionJob) => {
+    if (job.status === "QUEUED") return "Queued for processing";
+    if (job.chunksTotal) return `Processing ${job.chunksDone ?? 0}/${job.chunksTotal}`;
+    return `Processing${job.chunksDone ? ` (${job.chunksDone} chunks)` : "..."}`;
+  };
 
   // Load course materials
   const loadCourseMaterials = async (classId: number) => {
@@ -352,14 +412,11 @@ const CourseInfoContent: React.FC = () => {
         throw new Error(`Failed to replace file: ${response.statusText} - ${errorText}`);
       }
 
-      const updatedMaterial: CourseMaterial = await response.json();
-      
-      // Update the file in state
-      setUploadedFiles((prev) =>
-        prev.map((file) => (file.id === fileId ? updatedMaterial : file))
-      );
-      
-      console.log("File replaced successfully");
+      // 202: the new file is processed in the background; the row is refreshed when it finishes
+      const job: IngestionJob = await response.json();
+      void trackIngestionJob(job);
+
+      console.log("File replacement queued:", job);
       
       // Reset the file input
       event.target.value = "";
@@ -405,9 +462,11 @@ const CourseInfoContent: React.FC = () => {
         throw new Error(`Failed to upload file: ${response.statusText} - ${errorText}`);
       }
 
-      const newMaterial: CourseMaterial = await response.json();
-      setUploadedFiles((prev) => [...prev, newMaterial]);
-      console.log("File uploaded successfully:", newMaterial);
+      // 202: the material row exists already, so list it now and follow its job
+      const job: IngestionJob = await response.json();
+      await loadCourseMaterials(job.classId);
+      void trackIngestionJob(job);
+      console.log("File uploaded, processing:", job);
 
       // Reset the file input
       event.target.value = "";
@@ -692,6 +751,14 @@ const CourseInfoContent: React.FC = () => {
                               Uploaded:{" "}
                               {new Date(file.uploadedAt).toLocaleDateString()}
                             </span>
+                            {ingestingJobs[file.id] && (
+                              <>
+                                <span className={styles.fileDivider}>•</span>
+                                <span className={styles.fileDate}>
+                                  {describeJob(ingestingJobs[file.id])}
+                                </span>
+                              </>
+                            )}
                           </div>
                         </>
                       )}
@@ -102,7 +102,7 @@ const CourseLogsContent: React.FC = () => {
 
         for (const student of students) {
           const messagesRes = await fetch(
-            `${API_BASE}/api/messages/student/${student.studentId}/class/${courseId}`,
+            `${API_BASE}/api/messages/student/${student.studentId}/class/${courseId}/export`,
             {
               headers: getAuthHeaders(),
             }